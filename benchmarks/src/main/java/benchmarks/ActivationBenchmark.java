@@ -0,0 +1,160 @@
+package benchmarks;
+
+import Math.Activation;
+import Math.Functions;
+import Math.Sigmoid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ActivationBenchmark {
+
+    // The activation of the hidden layer of a 784 x neurons x 10 network for a batch of the given size.
+    @Param({"1", "10", "64"})
+    int batchSize;
+
+    @Param({"30", "100"})
+    int neurons;
+
+    private double[] weightedInput, activation, error, delta;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int size = batchSize * neurons;
+        // Weighted inputs of a trained network are mostly within a few units of 0.
+        weightedInput = random.doubles(size).map(x -> 8 * x - 4).toArray();
+        activation = new double[size];
+        for(int i = 0; i < size; i++) {
+            activation[i] = Functions.sigmoid(weightedInput[i]);
+        }
+        error = random.doubles(size).toArray();
+        delta = new double[size];
+    }
+
+    /**
+     * Applying the sigmoid to the weighted input of a layer.
+     */
+
+    @Benchmark
+    public double[] sigmoid(SigmoidFunction sigmoid) {
+        sigmoid.sigmoid.apply(weightedInput, 0, sigmoid.result, 0, weightedInput.length);
+        return sigmoid.result;
+    }
+
+    /**
+     * Applying an activation function to the weighted input of a layer, a row per image like Network does it.
+     */
+
+    @Benchmark
+    public double[] activation(Layer layer) {
+        for(int i = 0; i < batchSize; i++) {
+            layer.activation.apply(weightedInput, i * neurons, layer.result, i * neurons, neurons);
+        }
+        return layer.result;
+    }
+
+    /**
+     * Multiplying the error by the derivative of an activation function from the activation, a row per image.
+     */
+
+    @Benchmark
+    public double[] activationDerivative(Layer layer) {
+        System.arraycopy(error, 0, delta, 0, error.length);
+        for(int i = 0; i < batchSize; i++) {
+            layer.activation.multiplyDerivative(layer.output, i * neurons, delta, i * neurons, neurons);
+        }
+        return delta;
+    }
+
+    /**
+     * Multiplying the error by the sigmoid prime of the weighted input, an exp per element.
+     */
+
+    @Benchmark
+    public double[] sigmoidPrimeFromWeightedInput() {
+        for(int i = 0; i < error.length; i++) {
+            delta[i] = error[i] * Functions.sigmoidPrime(weightedInput[i]);
+        }
+        return delta;
+    }
+
+    /**
+     * Multiplying the error by the sigmoid prime from the activation stored when feeding forward, as backpropagation
+     * does it.
+     */
+
+    @Benchmark
+    public double[] sigmoidPrimeFromActivation() {
+        for(int i = 0; i < error.length; i++) {
+            delta[i] = error[i] * Functions.sigmoidPrimeFromActivation(activation[i]);
+        }
+        return delta;
+    }
+
+    /**
+     * The sigmoid implementation, only sigmoid() depends on it.
+     */
+
+    @State(Scope.Thread)
+    public static class SigmoidFunction {
+
+        // A String, the code generated by JMH would name an enum Math.Sigmoid, which is java.lang.Math to javac.
+        @Param({"EXACT", "TABLE", "RATIONAL"})
+        String name;
+
+        private Sigmoid sigmoid;
+        private double[] result;
+
+        @Setup
+        public void setUp(ActivationBenchmark benchmark) {
+            sigmoid = Sigmoid.valueOf(name);
+            result = new double[benchmark.weightedInput.length];
+        }
+    }
+
+    /**
+     * The activation function, only activation() and activationDerivative() depend on it.
+     */
+
+    @State(Scope.Thread)
+    public static class Layer {
+
+        @Param({"SIGMOID", "RELU", "LEAKY_RELU", "TANH", "SOFTMAX"})
+        String name;
+
+        private Activation activation;
+        private double[] result, output;
+
+        @Setup
+        public void setUp(ActivationBenchmark benchmark) {
+            activation = Activation.valueOf(name);
+            result = new double[benchmark.weightedInput.length];
+            output = new double[benchmark.weightedInput.length];
+            for(int i = 0; i < benchmark.batchSize; i++) {
+                activation.apply(benchmark.weightedInput, i * benchmark.neurons, output, i * benchmark.neurons, benchmark.neurons);
+            }
+        }
+    }
+}
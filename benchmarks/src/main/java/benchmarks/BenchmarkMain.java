@@ -0,0 +1,30 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public class BenchmarkMain {
+
+    // File the results are written to unless -rff is given.
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    /**
+     * Runs JMH with the given arguments, writing the results as JSON to jmh-result.json unless another result format
+     * or file is given, so that every run leaves a file that later runs can be compared against.
+     * @param args The JMH arguments, e.g. a regex of the benchmarks to run, see -h.
+     */
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if(!arguments.contains("-rf"))
+            arguments.addAll(List.of("-rf", "json"));
+        if(!arguments.contains("-rff"))
+            arguments.addAll(List.of("-rff", RESULT_FILE));
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
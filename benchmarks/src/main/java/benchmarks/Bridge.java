@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+final class Bridge {
+
+    /**
+     * Access to the classifier from the benchmarks. The classifier lives in the default package, which code in a package
+     * cannot name, and JMH does not allow benchmarks in the default package, so the benchmarks reach it through method
+     * handles. Kept in static final fields the handles are constants to the JIT and are inlined like direct calls.
+     */
+
+    private Bridge() {
+    }
+
+    /**
+     * Returns the classifier class with the given name.
+     */
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch(ClassNotFoundException e) {
+            throw new IllegalStateException("Class " + name + " is not on the class path", e);
+        }
+    }
+
+    /**
+     * Returns a handle to a static or instance method of any visibility, an instance method takes the instance first.
+     */
+
+    static MethodHandle method(Class<?> owner, String name, Class<?>... parameters) {
+        try {
+            Method method = owner.getDeclaredMethod(name, parameters);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("Method " + owner.getName() + "." + name + " is not found", e);
+        }
+    }
+
+    /**
+     * Returns a handle to a constructor of any visibility.
+     */
+
+    static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            Constructor<?> constructor = owner.getDeclaredConstructor(parameters);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("Constructor of " + owner.getName() + " is not found", e);
+        }
+    }
+
+    /**
+     * Returns the value of a field of any visibility, only meant for setting up a benchmark.
+     */
+
+    static Object field(Object target, String name) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(target);
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("Field " + target.getClass().getName() + "." + name + " is not found", e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DataBenchmark {
+
+    private static final Class<?> DATA = Bridge.type("Data"), DATASET = Bridge.type("Dataset"),
+                                   READER = Bridge.type("MNistDataReader"), DENSE_MATRIX = Bridge.type("DenseMatrix");
+
+    private static final MethodHandle NEW_DATA = Bridge.constructor(DATA, String.class);
+    private static final MethodHandle NEW_READER = Bridge.constructor(READER, Path.class);
+    private static final MethodHandle NEW_MATRIX = Bridge.constructor(DENSE_MATRIX, int.class, int.class);
+    private static final MethodHandle GET_TRAINING_IMAGES = Bridge.method(READER, "getTrainingImages");
+    private static final MethodHandle GET_TEST_SET = Bridge.method(DATA, "getTestSet");
+    private static final MethodHandle GET_TEST_IMAGES = Bridge.method(DATA, "getTestImages");
+    private static final MethodHandle SIZE = Bridge.method(DATASET, "size");
+    private static final MethodHandle COPY_BATCH = Bridge.method(DATASET, "copyBatch", int.class, DENSE_MATRIX);
+
+    // Size of the synthetic data, the same as MNist.
+    private static final int TRAINING_IMAGES = 60000, TEST_IMAGES = 10000, ROWS = 28, COLS = 28;
+
+    // Directory holding the four MNist files, empty to run on synthetic files of the same size.
+    @Param("")
+    String mnistDirectory;
+
+    private Path directory;
+    private boolean synthetic;
+    private Object reader, data, testSet;
+
+    @Setup
+    public void setUp() throws Throwable {
+        synthetic = mnistDirectory.isEmpty();
+        directory = synthetic ? writeSyntheticData() : Paths.get(mnistDirectory);
+        reader = NEW_READER.invoke(directory);
+        data = NEW_DATA.invoke(directory.toString());
+        testSet = GET_TEST_SET.invoke(data);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if(synthetic) {
+            try(Stream<Path> files = Files.walk(directory)) {
+                for(Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes random images and labels in the MNist format to a temporary directory.
+     */
+
+    private static Path writeSyntheticData() throws IOException {
+        Path directory = Files.createTempDirectory("mnist");
+        Random random = new Random(42);
+        writeIdx(directory.resolve("train-images.idx3-ubyte"), random, 0x803, TRAINING_IMAGES, ROWS, COLS);
+        writeIdx(directory.resolve("train-labels.idx1-ubyte"), random, 0x801, TRAINING_IMAGES);
+        writeIdx(directory.resolve("t10k-images.idx3-ubyte"), random, 0x803, TEST_IMAGES, ROWS, COLS);
+        writeIdx(directory.resolve("t10k-labels.idx1-ubyte"), random, 0x801, TEST_IMAGES);
+        return directory;
+    }
+
+    private static void writeIdx(Path file, Random random, int magic, int... dimensions) throws IOException {
+        int size = 1;
+        for(int dimension : dimensions) {
+            size *= dimension;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 * dimensions.length + size);
+        buffer.putInt(magic);
+        for(int dimension : dimensions) {
+            buffer.putInt(dimension);
+        }
+        byte[] content = new byte[size];
+        for(int i = 0; i < size; i++) {
+            content[i] = (byte) (magic == 0x801 ? random.nextInt(10) : random.nextInt(256));
+        }
+        buffer.put(content);
+        Files.write(file, buffer.array());
+    }
+
+    /**
+     * Mapping the four MNist files and checking their headers.
+     */
+
+    @Benchmark
+    public Object openReader() throws Throwable {
+        return NEW_READER.invoke(directory);
+    }
+
+    /**
+     * Copying every training image out of the mapped file into its own array.
+     */
+
+    @Benchmark
+    public Object readTrainingImages() throws Throwable {
+        return GET_TRAINING_IMAGES.invoke(reader);
+    }
+
+    /**
+     * Loading the data, mapping the MNist files and building the datasets on them.
+     */
+
+    @Benchmark
+    public Object loadData() throws Throwable {
+        return NEW_DATA.invoke(directory.toString());
+    }
+
+    /**
+     * Normalizing one batch of test images into a matrix, which is what preparing a training batch costs.
+     */
+
+    @Benchmark
+    public Object normalizeBatch(Batch batch) throws Throwable {
+        COPY_BATCH.invoke(testSet, batch.start, batch.matrix);
+        batch.start += batch.batchSize;
+        if(batch.start + batch.batchSize > batch.testSize)
+            batch.start = 0;
+        return batch.matrix;
+    }
+
+    /**
+     * Normalizing every test image into an array of doubles.
+     */
+
+    @Benchmark
+    public Object normalizeTestSet() throws Throwable {
+        return GET_TEST_IMAGES.invoke(data);
+    }
+
+    /**
+     * The matrix a batch is normalized into, only normalizeBatch() depends on the batch size.
+     */
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        @Param({"10", "64"})
+        int batchSize;
+
+        private Object matrix;
+        private int testSize, start;
+
+        @Setup
+        public void setUp(DataBenchmark benchmark) throws Throwable {
+            matrix = NEW_MATRIX.invoke(batchSize, ROWS * COLS);
+            testSize = (int) SIZE.invoke(benchmark.testSet);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MatrixBenchmark {
+
+    private static final Class<?> MATRIX = Bridge.type("Matrix"), DENSE_MATRIX = Bridge.type("DenseMatrix");
+
+    private static final MethodHandle NEW_MATRIX = Bridge.constructor(DENSE_MATRIX, int.class, int.class);
+    private static final MethodHandle DATA = Bridge.method(DENSE_MATRIX, "data");
+    private static final MethodHandle MULTIPLICATION_TRANSPOSED_INTO = Bridge.method(MATRIX, "multiplicationTransposedInto", DENSE_MATRIX, DENSE_MATRIX, DENSE_MATRIX, boolean.class);
+    private static final MethodHandle MULTIPLICATION_INTO = Bridge.method(MATRIX, "multiplicationInto", DENSE_MATRIX, DENSE_MATRIX, DENSE_MATRIX, boolean.class);
+    private static final MethodHandle TRANSPOSED_MULTIPLICATION_INTO = Bridge.method(MATRIX, "transposedMultiplicationInto", DENSE_MATRIX, DENSE_MATRIX, DENSE_MATRIX, boolean.class);
+    private static final MethodHandle VECTOR_MULTIPLICATION_INTO = Bridge.method(MATRIX, "multiplicationInto", double[].class, DENSE_MATRIX, double[].class, boolean.class);
+    private static final MethodHandle ADD_INTO = Bridge.method(MATRIX, "addInto", DENSE_MATRIX, DENSE_MATRIX, double[].class);
+    private static final MethodHandle COLUMN_SUM_INTO = Bridge.method(MATRIX, "columnSumInto", double[].class, DENSE_MATRIX, boolean.class);
+    private static final MethodHandle HADAMARD_PRODUCT_INTO = Bridge.method(MATRIX, "hadamardProductInto", DENSE_MATRIX, DENSE_MATRIX, DENSE_MATRIX);
+    private static final MethodHandle SCALED_ADDITION_INTO = Bridge.method(MATRIX, "scaledAdditionInto", DENSE_MATRIX, DENSE_MATRIX, double.class);
+
+    // The shapes of the first layer of a 784 x neurons x 10 network trained with the given batch size.
+    private static final int INPUTS = 784, OUTPUTS = 10;
+
+    @Param({"1", "10", "64"})
+    int batchSize;
+
+    @Param({"30", "100"})
+    int neurons;
+
+    // input: batchSize x 784, weights: neurons x 784, weightedInput and error: batchSize x neurons,
+    // outputError: batchSize x 10, outputWeights: 10 x neurons, gradient: neurons x 784.
+    private Object input, weights, weightedInput, error, outputError, outputWeights, gradient;
+    private double[] bias, biasGradient, image, neuronOutput;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Random random = new Random(42);
+        input = matrix(batchSize, INPUTS, random);
+        weights = matrix(neurons, INPUTS, random);
+        weightedInput = matrix(batchSize, neurons, random);
+        error = matrix(batchSize, neurons, random);
+        outputError = matrix(batchSize, OUTPUTS, random);
+        outputWeights = matrix(OUTPUTS, neurons, random);
+        gradient = matrix(neurons, INPUTS, random);
+        bias = random.doubles(neurons).toArray();
+        biasGradient = new double[neurons];
+        image = random.doubles(INPUTS).toArray();
+        neuronOutput = new double[neurons];
+    }
+
+    private static Object matrix(int rows, int cols, Random random) throws Throwable {
+        Object matrix = NEW_MATRIX.invoke(rows, cols);
+        double[] data = (double[]) DATA.invoke(matrix);
+        for(int i = 0; i < data.length; i++) {
+            data[i] = random.nextGaussian();
+        }
+        return matrix;
+    }
+
+    /**
+     * Weighted input of a batch, input * weights^T.
+     */
+
+    @Benchmark
+    public Object weightedInput() throws Throwable {
+        MULTIPLICATION_TRANSPOSED_INTO.invoke(weightedInput, input, weights, false);
+        return weightedInput;
+    }
+
+    /**
+     * Weighted input of one image, weights * image, the old single image path.
+     */
+
+    @Benchmark
+    public double[] weightedInputVector() throws Throwable {
+        VECTOR_MULTIPLICATION_INTO.invoke(neuronOutput, weights, image, false);
+        return neuronOutput;
+    }
+
+    /**
+     * Adding the bias to every row of the weighted input.
+     */
+
+    @Benchmark
+    public Object addBias() throws Throwable {
+        ADD_INTO.invoke(weightedInput, weightedInput, bias);
+        return weightedInput;
+    }
+
+    /**
+     * Error of the hidden layer propagated back from the output layer, outputError * outputWeights.
+     */
+
+    @Benchmark
+    public Object weightedError() throws Throwable {
+        MULTIPLICATION_INTO.invoke(error, outputError, outputWeights, false);
+        return error;
+    }
+
+    /**
+     * Multiplying the error by the derivative of the activation element by element.
+     */
+
+    @Benchmark
+    public Object hadamardProduct() throws Throwable {
+        HADAMARD_PRODUCT_INTO.invoke(weightedInput, error, weightedInput);
+        return weightedInput;
+    }
+
+    /**
+     * Weight gradient of a batch, error^T * input added to the gradient.
+     */
+
+    @Benchmark
+    public Object weightGradient() throws Throwable {
+        TRANSPOSED_MULTIPLICATION_INTO.invoke(gradient, error, input, true);
+        return gradient;
+    }
+
+    /**
+     * Bias gradient of a batch, the column sums of the error added to the gradient.
+     */
+
+    @Benchmark
+    public double[] biasGradient() throws Throwable {
+        COLUMN_SUM_INTO.invoke(biasGradient, error, true);
+        return biasGradient;
+    }
+
+    /**
+     * Gradient descent on the weights, weights += constant * gradient.
+     */
+
+    @Benchmark
+    public Object scaledAddition() throws Throwable {
+        SCALED_ADDITION_INTO.invoke(weights, gradient, -1e-12);
+        return weights;
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NetworkBenchmark {
+
+    private static final Class<?> NETWORK = Bridge.type("Network"), WORKSPACE = Bridge.type("Workspace"),
+                                   DENSE_MATRIX = Bridge.type("DenseMatrix"), LAYOUT = Bridge.type("Layout");
+
+    private static final MethodHandle PARSE_LAYOUT = Bridge.method(LAYOUT, "parse", String.class);
+    private static final MethodHandle NEW_NETWORK = Bridge.constructor(NETWORK, LAYOUT, long.class);
+    private static final MethodHandle NEW_WORKSPACE = Bridge.constructor(WORKSPACE, DENSE_MATRIX.arrayType(), int.class);
+    private static final MethodHandle GET_WEIGHTS = Bridge.method(NETWORK, "getWeights");
+    private static final MethodHandle DATA = Bridge.method(DENSE_MATRIX, "data");
+    private static final MethodHandle RESET_ERROR = Bridge.method(WORKSPACE, "resetError");
+    private static final MethodHandle FEED_FORWARD = Bridge.method(NETWORK, "feedForward", WORKSPACE, DENSE_MATRIX, int.class);
+    private static final MethodHandle BACK_PROPAGATE = Bridge.method(NETWORK, "backPropagate", WORKSPACE, int[].class, int.class);
+    private static final MethodHandle GRADIENT_DESCENT = Bridge.method(NETWORK, "doGradientDescent", WORKSPACE, double.class, int.class);
+
+    // Small enough that the weights hardly move however long the benchmark runs.
+    private static final double LEARNING_RATE = 1e-9;
+
+    // Per sample is a batch size of 1.
+    @Param({"1", "10", "64"})
+    int batchSize;
+
+    // Neurons and activation of each layer as Layout reads them, the sigmoid if left out.
+    @Param({"784-30-10", "784-100-10", "784-100:relu-10:softmax"})
+    String layout;
+
+    private Object network, workspace, input;
+    private int[] labels;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Random random = new Random(42);
+        network = NEW_NETWORK.invoke(PARSE_LAYOUT.invoke(layout), 42L);
+        workspace = NEW_WORKSPACE.invoke(GET_WEIGHTS.invoke(network), batchSize);
+        input = Bridge.field(workspace, "input");
+        double[] pixels = (double[]) DATA.invoke(input);
+        for(int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextDouble();
+        }
+        labels = random.ints(batchSize, 0, 10).toArray();
+        // Leave a fed forward batch in the workspace for backPropagate().
+        FEED_FORWARD.invoke(network, workspace, input, 0);
+    }
+
+    /**
+     * Feeding the batch forward through every layer.
+     */
+
+    @Benchmark
+    public Object feedForward() throws Throwable {
+        return FEED_FORWARD.invoke(network, workspace, input, 0);
+    }
+
+    /**
+     * Backpropagating the batch fed forward in setUp() and adding up its gradients.
+     */
+
+    @Benchmark
+    public void backPropagate() throws Throwable {
+        BACK_PROPAGATE.invoke(network, workspace, labels, 0);
+    }
+
+    /**
+     * One gradient descent step with the gradients in the workspace.
+     */
+
+    @Benchmark
+    public void gradientDescent() throws Throwable {
+        GRADIENT_DESCENT.invoke(network, workspace, LEARNING_RATE, batchSize);
+    }
+
+    /**
+     * A whole training step on one batch like Network.training() does it, without assembling the batch.
+     */
+
+    @Benchmark
+    public void trainingStep() throws Throwable {
+        RESET_ERROR.invoke(workspace);
+        FEED_FORWARD.invoke(network, workspace, input, 0);
+        BACK_PROPAGATE.invoke(network, workspace, labels, 0);
+        GRADIENT_DESCENT.invoke(network, workspace, LEARNING_RATE, batchSize);
+    }
+}
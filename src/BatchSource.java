@@ -0,0 +1,150 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class BatchSource implements AutoCloseable {
+
+    private final int batchSize, epochs, batchesPerEpoch;
+    private final Dataset dataset;
+    private final EpochSampler sampler;
+    private final TrainingTelemetry telemetry;
+
+    // Empty batches waiting to be filled and filled batches waiting to be trained on, every batch is in one of the two
+    // queues or held by the consumer.
+    private final BlockingQueue<Batch> free, ready;
+    private final Thread producer;
+    private volatile Throwable failure;
+
+    /**
+     * Prepares the batches of every epoch on a background thread, so that shuffling, copying and normalizing the images
+     * happen while the previous batch is trained on. The batches are taken in order with take() and handed back with
+     * release() to be filled again, so no matter how many epochs are run only the given number of buffers are allocated.
+     * Every epoch is shuffled by the sampler, images that do not fill a whole batch are skipped.
+     * @param dataset The images and labels to make batches of.
+     * @param batchSize The number of images in a batch.
+     * @param epochs The number of epochs to make batches for.
+     * @param buffers The number of batches that exist at once, 2 for double buffering and 3 for triple buffering.
+     * @param sampler The sampler that orders the dataset in each epoch, it is only used by the background thread.
+     */
+
+    BatchSource(Dataset dataset, int batchSize, int epochs, int buffers, EpochSampler sampler) {
+        this(dataset, batchSize, epochs, buffers, sampler, null);
+    }
+
+    /**
+     * Prepares the batches on a background thread and reports the time spent preparing them to the telemetry.
+     * @param telemetry The telemetry to report to, may be null.
+     * @see #BatchSource(Dataset, int, int, int, EpochSampler)
+     */
+
+    BatchSource(Dataset dataset, int batchSize, int epochs, int buffers, EpochSampler sampler, TrainingTelemetry telemetry) {
+        if(batchSize < 1 || batchSize > dataset.size())
+            throw new IllegalArgumentException("Batch size must be between 1 and " + dataset.size() + " but was " + batchSize);
+        if(buffers < 2)
+            throw new IllegalArgumentException("At least 2 buffers are needed but was " + buffers);
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+        this.epochs = epochs;
+        this.batchesPerEpoch = dataset.size() / batchSize;
+        this.sampler = sampler;
+        this.telemetry = telemetry;
+        free = new ArrayBlockingQueue<>(buffers);
+        ready = new ArrayBlockingQueue<>(buffers);
+        for(int i = 0; i < buffers; i++) {
+            free.add(new Batch(batchSize, dataset.imageSize()));
+        }
+        producer = new Thread(this::produce, "batch-source");
+        producer.setDaemon(true);
+        if(telemetry != null)
+            telemetry.setBatchThread(producer);
+        producer.start();
+    }
+
+    /**
+     * Returns the number of batches in each epoch.
+     */
+
+    int batchesPerEpoch() {
+        return batchesPerEpoch;
+    }
+
+    /**
+     * Waits for the next batch and returns it. The batch must be handed back with release() once it has been used.
+     * @throws IllegalStateException if the background thread failed to prepare the batch.
+     */
+
+    Batch take() throws InterruptedException {
+        Batch batch = ready.take();
+        if(batch == Batch.FAILED)
+            throw new IllegalStateException("Preparing a batch failed", failure);
+        return batch;
+    }
+
+    /**
+     * Hands a batch taken with take() back to be filled again.
+     */
+
+    void release(Batch batch) {
+        free.add(batch);
+    }
+
+    /**
+     * Stops the background thread, batches that are not taken yet are dropped.
+     */
+
+    @Override
+    public void close() {
+        producer.interrupt();
+        try {
+            producer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fills the batches of every epoch in order, runs on the background thread.
+     */
+
+    private void produce() {
+        try {
+            for(int epoch = 0; epoch < epochs; epoch++) {
+                sampler.shuffle();
+                for(int i = 0; i < batchesPerEpoch; i++) {
+                    Batch batch = free.take();
+                    long time = TrainingTelemetry.start();
+                    sampler.gather(dataset, i * batchSize, batch.input, batch.labels);
+                    if(TrainingTelemetry.ENABLED && telemetry != null)
+                        telemetry.lap(TrainingTelemetry.Phase.BATCH_ASSEMBLY, time);
+                    ready.put(batch);
+                }
+            }
+        } catch(InterruptedException e) {
+            // Closed before every batch was made.
+        } catch(RuntimeException | Error e) {
+            failure = e;
+            ready.offer(Batch.FAILED);
+        }
+    }
+
+    /**
+     * One batch of normalized images, row i of the input is an image with label labels[i].
+     */
+
+    static class Batch {
+
+        // Handed to the consumer in place of a batch when the background thread fails.
+        private static final Batch FAILED = new Batch(0, 0);
+
+        final DenseMatrix input;
+        final int[] labels;
+
+        Batch(int rows, int cols) {
+            input = new DenseMatrix(rows, cols);
+            labels = new int[rows];
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public class BatchingPredictor implements AutoCloseable {
+
+    private final Network network;
+    private final int maxBatchSize, imageSize;
+    private final long maxWaitNanos;
+
+    // Requests waiting to be put in a batch, SHUTDOWN is put last by close().
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder requests = new LongAdder(), batches = new LongAdder();
+
+    /**
+     * Classifies images from any number of threads by coalescing them into batches. Each call to predict() queues its
+     * image and returns at once, a background thread takes the queued images and feeds them forward together as soon as
+     * maxBatchSize images are waiting or the first of them has waited maxWait. One matrix multiplication per layer for
+     * the whole batch is much faster than one matrix vector multiplication per image, so under concurrency this trades
+     * at most maxWait of latency for throughput, while a lone caller only waits maxWait.
+     * @param network The network to classify with, it must not be trained meanwhile.
+     * @param maxBatchSize The largest number of images fed forward together.
+     * @param maxWait The longest time the first image of a batch waits for more images, 0 to never wait.
+     * @param unit The unit of maxWait.
+     */
+
+    public BatchingPredictor(Network network, int maxBatchSize, long maxWait, TimeUnit unit) {
+        if(maxBatchSize < 1)
+            throw new IllegalArgumentException("Max batch size must be positive but was " + maxBatchSize);
+        if(maxWait < 0)
+            throw new IllegalArgumentException("Max wait must not be negative but was " + maxWait);
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.imageSize = network.getWeights()[0].cols();
+        dispatcher = new Thread(this::dispatch, "batching-predictor");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues an image to be classified in the next batch.
+     * @param image The image to classify, it must not be changed until the future is done.
+     * @return A future that is completed with the prediction of the image, or exceptionally if it could not be made.
+     * @throws IllegalArgumentException if the image does not fit the network.
+     * @throws RejectedExecutionException if the predictor is closed.
+     */
+
+    public CompletableFuture<Prediction> predict(double[] image) {
+        if(image.length != imageSize)
+            throw new IllegalArgumentException("Expected an image of " + imageSize + " pixels but received " + image.length);
+        if(closed)
+            throw new RejectedExecutionException("Predictor is closed");
+        Request request = new Request(image);
+        queue.add(request);
+        if(queue.size() >= maxBatchSize - 1)
+            LockSupport.unpark(dispatcher);
+        // close() may have drained the queue between the check above and adding the request.
+        if(closed && queue.remove(request))
+            throw new RejectedExecutionException("Predictor is closed");
+        return request.future;
+    }
+
+    /**
+     * Returns the average number of images in the batches fed forward so far.
+     */
+
+    double averageBatchSize() {
+        long batches = this.batches.sum();
+        return batches == 0 ? 0.0 : (double) requests.sum() / batches;
+    }
+
+    /**
+     * Stops accepting images and waits for the images already queued to be classified.
+     */
+
+    @Override
+    public void close() {
+        if(closed)
+            return;
+        closed = true;
+        queue.add(Request.SHUTDOWN);
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request request;
+        while((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new RejectedExecutionException("Predictor is closed"));
+        }
+    }
+
+    /**
+     * Collects batches and feeds them forward until SHUTDOWN is taken, runs on the background thread.
+     */
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        boolean shutdown = false;
+        try {
+            while(!shutdown) {
+                Request first = queue.take();
+                if(first == Request.SHUTDOWN)
+                    break;
+                batch.add(first);
+                // Sleep until the batch is full, the wait is over or the predictor is closed, predict() wakes this thread
+                // when the batch is full and close() when it is closed.
+                long deadline = System.nanoTime() + maxWaitNanos;
+                long remaining;
+                while(!closed && queue.size() < maxBatchSize - 1 && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                    if(Thread.interrupted())
+                        throw new InterruptedException();
+                }
+                Request next;
+                while(batch.size() < maxBatchSize && (next = queue.poll()) != null) {
+                    if(next == Request.SHUTDOWN) {
+                        shutdown = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                run(batch);
+                batch.clear();
+            }
+        } catch(InterruptedException e) {
+            // Nothing classifies the queued images any more, so they are failed along with the batch and no more are
+            // accepted.
+            closed = true;
+            for(Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+            Request request;
+            while((request = queue.poll()) != null) {
+                if(request != Request.SHUTDOWN)
+                    request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Feeds a batch forward and completes the future of each request.
+     */
+
+    private void run(List<Request> batch) {
+        double[][] images = new double[batch.size()][];
+        for(int i = 0; i < images.length; i++) {
+            images[i] = batch.get(i).image;
+        }
+        try {
+            Prediction[] predictions = network.predictBatch(images);
+            requests.add(batch.size());
+            batches.increment();
+            for(int i = 0; i < predictions.length; i++) {
+                batch.get(i).future.complete(predictions[i]);
+            }
+        } catch(RuntimeException | Error e) {
+            for(Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * An image waiting to be classified and the future its prediction is handed to.
+     */
+
+    private static class Request {
+
+        // Put in the queue by close() to stop the background thread.
+        private static final Request SHUTDOWN = new Request(null);
+
+        final double[] image;
+        final CompletableFuture<Prediction> future = new CompletableFuture<>();
+
+        Request(double[] image) {
+            this.image = image;
+        }
+    }
+}
@@ -1,6 +1,4 @@
-import Math.Functions;
 import java.io.IOException;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
@@ -9,124 +7,108 @@ import java.nio.file.Paths;
 
 class Data {
 
-    // Data
-    private double[][] trainingImages, testImages;
-    private int[] trainingLabels, testLabels;
+    // Views of the data, the images are kept as raw unsigned pixels, one byte each, and normalized when they are put
+    // into a batch.
+    private final Dataset trainingSet, validationSet, testSet;
 
     /**
-     * Import data from MNistDataReader and pre-processes it. Turns the bytes into doubles and apply sigmoid to it.
+     * Import data from MNistDataReader. The images are normalized with the sigmoid like they always have been.
      * directory = where the MNist files are saved.
-     * validationSize = number of picture for validation batch.
      * @throws IOException if the files for the data are not found.
      */
 
     Data(String directory) throws IOException {
-        Path path = Paths.get(directory);
-        MNistDataReader reader = new MNistDataReader(path);
-        getAndProcessData(reader);
+        this(directory, Normalization.sigmoid());
     }
 
     /**
-     * Retrieves the data from MNistDataReader and stats the pre-processing.
-     * @param reader the reader that is used to get the data.
+     * Import data from MNistDataReader without a validation set.
+     * directory = where the MNist files are saved.
+     * normalization = how pixels are turned into the input of a network.
      * @throws IOException if the files for the data are not found.
      */
 
-    private void getAndProcessData(MNistDataReader reader) throws IOException {
-        byte[][] trainingImages = reader.getTrainingImages();
-        byte[][] testImages = reader.getTestImages();
-        byte[] trainingLabels = reader.getTrainingLabels();
-        byte[] testLabels = reader.getTestLabels();
-        this.trainingImages = preprocessImages(trainingImages);
-        this.testImages = preprocessImages(testImages);
-        this.trainingLabels = preprocessLabels(trainingLabels);
-        this.testLabels = preprocessLabels(testLabels);
+    Data(String directory, Normalization normalization) throws IOException {
+        this(directory, normalization, 0);
     }
 
     /**
-     * @param images the images to preprocess.
-     * @return the processed images which is the original pictures converted to doubles and then the sigmoid function
-     * is applied to this.
+     * Import data from MNistDataReader. The images are kept as bytes, an eighth of the memory they would take as
+     * doubles, and the given normalization is applied to them when they are fed to a network.
+     * directory = where the MNist files are saved.
+     * normalization = how pixels are turned into the input of a network.
+     * validationSize = number of picture for validation batch, they are taken from the end of the training images.
+     * @throws IOException if the files for the data are not found.
      */
 
-    private static double[][] preprocessImages(byte[][] images) {
-        double[][] result = convertToDouble(images);
-        result = applyFunction(result);
-        return result;
+    Data(String directory, Normalization normalization, int validationSize) throws IOException {
+        FlightEvents.DataLoadEvent event = new FlightEvents.DataLoadEvent();
+        event.begin();
+        MNistDataReader reader = new MNistDataReader(Paths.get(directory));
+        int imageSize = reader.getImageSize();
+        Dataset training = new Dataset(reader.getTrainingImageBuffer(), imageSize, preprocessLabels(reader.getTrainingLabels()), normalization);
+        if(validationSize < 0 || validationSize > training.size())
+            throw new IllegalArgumentException("Validation size must be between 0 and " + training.size() + " but was " + validationSize);
+        int split = training.size() - validationSize;
+        this.trainingSet = training.range(0, split);
+        this.validationSet = training.range(split, training.size());
+        this.testSet = new Dataset(reader.getTestImageBuffer(), imageSize, preprocessLabels(reader.getTestLabels()), normalization);
+        if(event.shouldCommit()) {
+            event.directory = directory;
+            event.trainingImages = training.size();
+            event.testImages = testSet.size();
+            event.commit();
+        }
     }
 
     /**
-     * Converts the given byte array to doubles, however it transforms the bytes into unsigned bytes and then into doubles.
-     * @param images the images to convert into doubles.
-     * @return the images as doubles.
+     * Converts the given array to an int array
      */
 
-    private static double[][] convertToDouble(byte[][] images) {
-        double[][] result = new double[images.length][images[0].length];
+    private static int[] preprocessLabels(byte[] labels) {
+        int[] result = new int[labels.length];
         for(int i = 0; i < result.length; i++) {
-            for(int j = 0; j < result[i].length; j++) {
-                if(images[i][j] < 0)
-                    result[i][j] = 256 + images[i][j];
-                else
-                    result[i][j] = images[i][j];
-            }
+            result[i] = labels[i];
         }
         return result;
     }
 
     /**
-     * Applies the sigmoid function to the given array.
-     * @param images the images to apply the function to.
-     * @return the images with sigmoid applied to them.
+     * Returns the training images without the validation images. Views are immutable and share their storage, so this
+     * does not copy anything.
      */
 
-    private static double[][] applyFunction(double[][] images) {
-        double[][] result = new double[images.length][images[0].length];
-        for(int i = 0; i < result.length; i++) {
-            for(int j = 0; j < result[i].length; j++) {
-                if(images[i][j] == 0)
-                    result[i][j] = 0;
-                else
-                    result[i][j] = Functions.sigmoid(images[i][j]);
-            }
-        }
-        return result;
+    Dataset getTrainingSet() {
+        return trainingSet;
     }
 
     /**
-     * Converts the given array to an int array
+     * Returns the validation images, the last validationSize images of the training file.
      */
 
-    private static int[] preprocessLabels(byte[] labels) {
-        int[] result = new int[labels.length];
-        for(int i = 0; i < result.length; i++) {
-            result[i] = labels[i];
-        }
-        return result;
+    Dataset getValidationSet() {
+        return validationSet;
+    }
+
+    Dataset getTestSet() {
+        return testSet;
     }
 
     /**
-     * Returns a copy of this trainingImages.
+     * Returns the normalized training images as doubles. This takes eight times the memory of the pixels, so only use
+     * it where the images are needed as doubles.
      */
 
     double[][] getTrainingImages() {
-        double[][] result = new double[trainingImages.length][trainingImages[0].length];
-        for(int i = 0; i < result.length; i++) {
-            System.arraycopy(trainingImages[i], 0, result[i], 0, result[i].length);
-        }
-        return result;
+        return toArray(trainingSet);
     }
 
     /**
-     * Returns a copy of this testImages.
+     * Returns the normalized test images as doubles, see getTrainingImages().
      */
 
     double[][] getTestImages() {
-        double[][] result = new double[testImages.length][testImages[0].length];
-        for(int i = 0; i < result.length; i++) {
-            System.arraycopy(testImages[i], 0, result[i], 0, result[i].length);
-        }
-        return result;
+        return toArray(testSet);
     }
 
     /**
@@ -134,9 +116,7 @@ class Data {
      */
 
     int[] getTrainingLabels() {
-        int[] result = new int[trainingLabels.length];
-        System.arraycopy(trainingLabels, 0, result, 0, result.length);
-        return result;
+        return labels(trainingSet);
     }
 
     /**
@@ -144,10 +124,22 @@ class Data {
      */
 
     int[] getTestLabels() {
-        int[] result = new int[testLabels.length];
-        System.arraycopy(testLabels, 0, result, 0, result.length);
-        return result;
+        return labels(testSet);
     }
-}
 
+    private static double[][] toArray(Dataset dataset) {
+        double[][] result = new double[dataset.size()][];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = dataset.normalizedImage(i);
+        }
+        return result;
+    }
 
+    private static int[] labels(Dataset dataset) {
+        int[] result = new int[dataset.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = dataset.label(i);
+        }
+        return result;
+    }
+}
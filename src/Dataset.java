@@ -0,0 +1,233 @@
+import java.nio.ByteBuffer;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class Dataset {
+
+    // The shared storage, never modified. Image i of this view starts at pixels[index(i) * imageSize] and has label
+    // labels[index(i)].
+    private final ByteBuffer pixels;
+    private final int imageSize;
+    private final int[] labels;
+    private final Normalization normalization;
+
+    // This view is indices[offset] to indices[offset + size - 1], or offset to offset + size - 1 if indices is null.
+    private final int[] indices;
+    private final int offset, size;
+
+    /**
+     * An immutable view of labelled images. Views share the images and labels, so taking a range, a subset or a fold
+     * only costs the indices it selects, and any number of threads may read the same view.
+     * The pixels may be a memory mapped file, in which case nothing is read until the images are used.
+     * @param pixels The images as raw pixels one after another, they must not be modified afterwards.
+     * @param imageSize The number of pixels in one image.
+     * @param labels The label of each image.
+     * @param normalization The normalization to apply to the pixels when they are fed to a network.
+     */
+
+    Dataset(ByteBuffer pixels, int imageSize, int[] labels, Normalization normalization) {
+        this(pixels, imageSize, labels, normalization, null, 0, labels.length);
+        if(imageSize <= 0 || (long) imageSize * labels.length != pixels.capacity())
+            throw new IllegalArgumentException("Illegal dataset dimensions. " + pixels.capacity() + " pixels != " + labels.length + " labels x " + imageSize);
+    }
+
+    private Dataset(ByteBuffer pixels, int imageSize, int[] labels, Normalization normalization, int[] indices, int offset, int size) {
+        this.pixels = pixels;
+        this.imageSize = imageSize;
+        this.labels = labels;
+        this.normalization = normalization;
+        this.indices = indices;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of images in this view.
+     */
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of pixels in one image.
+     */
+
+    int imageSize() {
+        return imageSize;
+    }
+
+    Normalization normalization() {
+        return normalization;
+    }
+
+    /**
+     * Returns this view normalized with the given normalization instead, e.g. the training and test images both
+     * standardized with Normalization.standardized(trainingSet). Only the view is new, the images are shared.
+     */
+
+    Dataset withNormalization(Normalization normalization) {
+        return new Dataset(pixels, imageSize, labels, normalization, indices, offset, size);
+    }
+
+    /**
+     * Returns the index in the shared storage of image i of this view.
+     */
+
+    private int index(int i) {
+        if(i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Image " + i + " outside of " + size);
+        return indices == null ? offset + i : indices[offset + i];
+    }
+
+    int label(int i) {
+        return labels[index(i)];
+    }
+
+    /**
+     * Returns image i normalized.
+     */
+
+    double[] normalizedImage(int i) {
+        double[] result = new double[imageSize];
+        copyImage(i, result);
+        return result;
+    }
+
+    /**
+     * Counts the pixels of this view, index v of the result is the number of pixels with the value v.
+     */
+
+    long[] histogram() {
+        long[] result = new long[256];
+        for(int i = 0; i < size; i++) {
+            int start = index(i) * imageSize;
+            for(int j = 0; j < imageSize; j++) {
+                result[pixels.get(start + j) & 0xFF]++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a view of the images from to to - 1 of this view.
+     */
+
+    Dataset range(int from, int to) {
+        if(from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " outside of " + size);
+        return new Dataset(pixels, imageSize, labels, normalization, indices, offset + from, to - from);
+    }
+
+    /**
+     * Returns a view of the given images of this view in the given order.
+     * @param indices Indices into this view, they may repeat.
+     */
+
+    Dataset subset(int[] indices) {
+        int[] result = new int[indices.length];
+        for(int i = 0; i < indices.length; i++) {
+            result[i] = index(indices[i]);
+        }
+        return new Dataset(pixels, imageSize, labels, normalization, result, 0, result.length);
+    }
+
+    /**
+     * Returns fold k of this view split into the given number of folds, the folds are contiguous ranges that differ in
+     * size by at most one image.
+     */
+
+    Dataset fold(int k, int folds) {
+        checkFold(k, folds);
+        return range(foldStart(k, folds), foldStart(k + 1, folds));
+    }
+
+    /**
+     * Returns every image of this view except fold k, for training against fold(k, folds).
+     */
+
+    Dataset exceptFold(int k, int folds) {
+        checkFold(k, folds);
+        int start = foldStart(k, folds), end = foldStart(k + 1, folds);
+        int[] result = new int[size - (end - start)];
+        for(int i = 0; i < start; i++) {
+            result[i] = i;
+        }
+        for(int i = end; i < size; i++) {
+            result[i - end + start] = i;
+        }
+        return subset(result);
+    }
+
+    private void checkFold(int k, int folds) {
+        if(folds < 1 || k < 0 || k >= folds)
+            throw new IllegalArgumentException("Illegal fold " + k + " of " + folds);
+    }
+
+    private int foldStart(int k, int folds) {
+        return (int) ((long) k * size / folds);
+    }
+
+    /**
+     * Normalizes the images from start to start + result.rows() - 1 into one contiguous matrix where each row is one
+     * image.
+     */
+
+    void copyBatch(int start, DenseMatrix result) {
+        checkBatch(start, result.rows(), result.cols());
+        for(int i = 0; i < result.rows(); i++) {
+            copyImage(start + i, result, i);
+        }
+    }
+
+    /**
+     * Normalizes image i into the given row of the result.
+     */
+
+    void copyImage(int i, DenseMatrix result, int row) {
+        if(imageSize != result.cols())
+            throw new IllegalArgumentException("Illegal image dimensions. " + imageSize + " != " + result.cols());
+        normalization.apply(pixels, index(i) * imageSize, result.data(), result.index(row, 0), imageSize);
+    }
+
+    /**
+     * Normalizes image i into the given array.
+     */
+
+    void copyImage(int i, double[] result) {
+        if(imageSize != result.length)
+            throw new IllegalArgumentException("Illegal image dimensions. " + imageSize + " != " + result.length);
+        normalization.apply(pixels, index(i) * imageSize, result, 0, imageSize);
+    }
+
+    /**
+     * Normalizes the images from start to start + result.rows() - 1 into one contiguous single precision matrix where
+     * each row is one image.
+     */
+
+    void copyBatch(int start, FloatDenseMatrix result) {
+        checkBatch(start, result.rows(), result.cols());
+        for(int i = 0; i < result.rows(); i++) {
+            copyImage(start + i, result, i);
+        }
+    }
+
+    /**
+     * Normalizes image i into the given row of the single precision result.
+     */
+
+    void copyImage(int i, FloatDenseMatrix result, int row) {
+        if(imageSize != result.cols())
+            throw new IllegalArgumentException("Illegal image dimensions. " + imageSize + " != " + result.cols());
+        normalization.apply(pixels, index(i) * imageSize, result.data(), result.index(row, 0), imageSize);
+    }
+
+    private void checkBatch(int start, int rows, int cols) {
+        if(cols != imageSize)
+            throw new IllegalArgumentException("Illegal image dimensions. " + imageSize + " != " + cols);
+        if(start < 0 || start + rows > size)
+            throw new IndexOutOfBoundsException("Images " + start + " to " + (start + rows) + " outside of " + size);
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public class DenseMatrix {
+
+    // Row-major storage, element (i, j) is at data[offset + i * stride + j].
+    private final double[] data;
+    private final int offset, rows, cols, stride;
+
+    /**
+     * Creates a rows x cols matrix filled with zeros.
+     */
+
+    public DenseMatrix(int rows, int cols) {
+        this(new double[rows * cols], 0, rows, cols, cols);
+    }
+
+    /**
+     * Creates a matrix with a copy of the given array of arrays.
+     * @param matrix The matrix to copy, every row must have the same length.
+     */
+
+    public DenseMatrix(double[][] matrix) {
+        this(matrix.length, matrix[0].length);
+        for(int i = 0; i < rows; i++) {
+            if(matrix[i].length != cols)
+                throw new IllegalArgumentException("Illegal matrix dimensions. " + matrix[i].length + " != " + cols);
+            System.arraycopy(matrix[i], 0, data, i * cols, cols);
+        }
+    }
+
+    /**
+     * Creates a matrix backed by the given array, nothing is copied.
+     * @param data The backing array.
+     * @param offset The index of element (0, 0) in data.
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @param stride The distance in data between the start of two consecutive rows.
+     */
+
+    public DenseMatrix(double[] data, int offset, int rows, int cols, int stride) {
+        if(rows < 0 || cols < 0 || stride < cols || offset < 0 || (rows > 0 && offset + (rows - 1) * stride + cols > data.length))
+            throw new IllegalArgumentException("Illegal matrix dimensions.");
+        this.data = data;
+        this.offset = offset;
+        this.rows = rows;
+        this.cols = cols;
+        this.stride = stride;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the backing array of this matrix. Element (i, j) is at index(i, j).
+     */
+
+    public double[] data() {
+        return data;
+    }
+
+    /**
+     * Returns the index of element (i, j) in the backing array.
+     */
+
+    public int index(int i, int j) {
+        return offset + i * stride + j;
+    }
+
+    public double get(int i, int j) {
+        return data[index(i, j)];
+    }
+
+    public void set(int i, int j, double value) {
+        data[index(i, j)] = value;
+    }
+
+    /**
+     * Returns row i as a 1 x cols view sharing storage with this matrix.
+     */
+
+    public DenseMatrix row(int i) {
+        return rows(i, 1);
+    }
+
+    /**
+     * Returns the rows start to start + count as a view sharing storage with this matrix.
+     */
+
+    public DenseMatrix rows(int start, int count) {
+        return subMatrix(start, 0, count, cols);
+    }
+
+    /**
+     * Returns a view of the block starting at (row, col) of size rows x cols sharing storage with this matrix.
+     */
+
+    public DenseMatrix subMatrix(int row, int col, int rows, int cols) {
+        if(row < 0 || col < 0 || row + rows > this.rows || col + cols > this.cols)
+            throw new IndexOutOfBoundsException("Block (" + row + ", " + col + ") " + rows + "x" + cols + " outside of " + this.rows + "x" + this.cols);
+        return new DenseMatrix(data, index(row, col), rows, cols, stride);
+    }
+
+    /**
+     * Sets every element of this matrix to the given value.
+     */
+
+    public void fill(double value) {
+        for(int i = 0; i < rows; i++) {
+            int start = index(i, 0);
+            Arrays.fill(data, start, start + cols, value);
+        }
+    }
+
+    /**
+     * Copies the given matrix into this matrix.
+     */
+
+    public void copyFrom(DenseMatrix matrix) {
+        if(matrix.rows != rows || matrix.cols != cols)
+            throw new IllegalArgumentException("Illegal matrix dimensions.");
+        for(int i = 0; i < rows; i++) {
+            System.arraycopy(matrix.data, matrix.index(i, 0), data, index(i, 0), cols);
+        }
+    }
+
+    /**
+     * Copies the rows start to start + rows() - 1 of the given matrix into this matrix.
+     */
+
+    public void copyFrom(DenseMatrix matrix, int start) {
+        if(matrix.cols != cols)
+            throw new IllegalArgumentException("Illegal matrix dimensions.");
+        if(start < 0 || start + rows > matrix.rows)
+            throw new IndexOutOfBoundsException("Rows " + start + " to " + (start + rows) + " outside of " + matrix.rows);
+        for(int i = 0; i < rows; i++) {
+            System.arraycopy(matrix.data, matrix.index(start + i, 0), data, index(i, 0), cols);
+        }
+    }
+
+    /**
+     * Copies the given vector into row i of this matrix.
+     */
+
+    public void setRow(int i, double[] vector) {
+        if(vector.length != cols)
+            throw new IllegalArgumentException("Illegal vector dimensions. " + vector.length + " != " + cols);
+        System.arraycopy(vector, 0, data, index(i, 0), cols);
+    }
+
+    /**
+     * Returns a copy of row i.
+     */
+
+    public double[] getRow(int i) {
+        double[] result = new double[cols];
+        System.arraycopy(data, index(i, 0), result, 0, cols);
+        return result;
+    }
+
+    /**
+     * Returns a copy of this matrix as an array of arrays.
+     */
+
+    public double[][] toArray() {
+        double[][] result = new double[rows][];
+        for(int i = 0; i < rows; i++) {
+            result[i] = getRow(i);
+        }
+        return result;
+    }
+}
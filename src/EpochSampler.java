@@ -0,0 +1,91 @@
+import java.util.Random;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class EpochSampler {
+
+    // order[i] is the image of the dataset at position i of the current epoch.
+    private final int[] order;
+    private final Random randomizer;
+
+    /**
+     * Decides the order images are trained on in each epoch. Only a permutation of the indices is shuffled, so the
+     * dataset is never changed and may be shared. With the same seed the same sequence of epochs is produced.
+     * @param size The number of images in the dataset.
+     * @param seed The seed of the randomizer.
+     */
+
+    EpochSampler(int size, long seed) {
+        this.order = new int[size];
+        for(int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        this.randomizer = new Random(seed);
+    }
+
+    int size() {
+        return order.length;
+    }
+
+    /**
+     * Returns the image at the given position of the current epoch.
+     */
+
+    int get(int position) {
+        return order[position];
+    }
+
+    /**
+     * Shuffles the permutation for the next epoch with Fisher-Yates, every permutation is equally likely. Does not
+     * allocate anything.
+     */
+
+    void shuffle() {
+        for(int i = order.length - 1; i > 0; i--) {
+            int index = randomizer.nextInt(i + 1);
+            int temp = order[index];
+            order[index] = order[i];
+            order[i] = temp;
+        }
+    }
+
+    /**
+     * Normalizes the images at the positions start to start + input.rows() - 1 of the current epoch into one contiguous
+     * matrix and copies their labels.
+     * @param dataset The dataset this sampler orders.
+     * @param start The first position of the batch.
+     * @param input The matrix to write the batch to, one row per image.
+     * @param labels The array to write the labels to, labels[i] is the label of row i.
+     */
+
+    void gather(Dataset dataset, int start, DenseMatrix input, int[] labels) {
+        checkBatch(dataset, start, input.rows());
+        for(int i = 0; i < input.rows(); i++) {
+            int image = order[start + i];
+            dataset.copyImage(image, input, i);
+            labels[i] = dataset.label(image);
+        }
+    }
+
+    /**
+     * Single precision version of gather().
+     */
+
+    void gather(Dataset dataset, int start, FloatDenseMatrix input, int[] labels) {
+        checkBatch(dataset, start, input.rows());
+        for(int i = 0; i < input.rows(); i++) {
+            int image = order[start + i];
+            dataset.copyImage(image, input, i);
+            labels[i] = dataset.label(image);
+        }
+    }
+
+    private void checkBatch(Dataset dataset, int start, int rows) {
+        if(dataset.size() != order.length)
+            throw new IllegalArgumentException("Sampler of " + order.length + " images used with dataset of " + dataset.size());
+        if(start < 0 || start + rows > order.length)
+            throw new IndexOutOfBoundsException("Positions " + start + " to " + (start + rows) + " outside of " + order.length);
+    }
+}
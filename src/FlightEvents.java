@@ -0,0 +1,178 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+final class FlightEvents {
+
+    /**
+     * Java Flight Recorder events of training, inference and loading, so a recording shows what the network was doing
+     * next to the garbage collections, CPU load and locks recorded by the JVM. The events are enabled and configured by
+     * digits.jfc. Creating an event allocates it whether a recording is running or not, so the per-batch and inference
+     * events are only created while their type is enabled. Stack traces are off by default as they are the expensive part of an event.
+     */
+
+    private FlightEvents() {
+    }
+
+    // The types of BatchEvent and InferenceEvent, checked before every batch and every prediction.
+    static final EventType BATCH = EventType.getEventType(BatchEvent.class);
+    static final EventType INFERENCE = EventType.getEventType(InferenceEvent.class);
+
+    @Name("digits.Epoch")
+    @Label("Epoch")
+    @Category({"Handwritten Digits", "Training"})
+    @Description("One epoch of training including the evaluation after it")
+    @StackTrace(false)
+    static class EpochEvent extends Event {
+
+        @Label("Epoch")
+        int epoch;
+
+        @Label("Layout")
+        @Description("Number of neurons and activation of each layer, the input first")
+        String layout;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Threads")
+        int threads;
+
+        @Label("Samples")
+        @Description("Number of images trained on")
+        long samples;
+
+        @Label("Accuracy")
+        @Percentage
+        double accuracy;
+
+        @Label("Loss")
+        @Description("Mean loss per image of the test set")
+        double loss;
+    }
+
+    @Name("digits.Batch")
+    @Label("Mini-batch")
+    @Category({"Handwritten Digits", "Training"})
+    @Description("Waiting for, feeding forward, backpropagating and descending on one mini-batch")
+    @StackTrace(false)
+    static class BatchEvent extends Event {
+
+        @Label("Epoch")
+        int epoch;
+
+        @Label("Batch")
+        @Description("Index of the batch in the epoch")
+        int batch;
+
+        @Label("Batch Size")
+        int batchSize;
+    }
+
+    @Name("digits.Evaluation")
+    @Label("Evaluation")
+    @Category({"Handwritten Digits", "Training"})
+    @Description("Classifying a dataset and counting the correct images")
+    @StackTrace(false)
+    static class EvaluationEvent extends Event {
+
+        @Label("Layout")
+        String layout;
+
+        @Label("Samples")
+        long samples;
+
+        @Label("Correct")
+        long correct;
+
+        @Label("Accuracy")
+        @Percentage
+        double accuracy;
+
+        @Label("Loss")
+        @Description("Mean loss per image")
+        double loss;
+    }
+
+    @Name("digits.Inference")
+    @Label("Inference")
+    @Category({"Handwritten Digits", "Inference"})
+    @Description("Classifying images with predict, predictBatch or predictBatchParallel")
+    @StackTrace(false)
+    static class InferenceEvent extends Event {
+
+        @Label("Method")
+        String method;
+
+        @Label("Layout")
+        String layout;
+
+        @Label("Images")
+        int images;
+    }
+
+    @Name("digits.ModelLoad")
+    @Label("Model Load")
+    @Category({"Handwritten Digits", "Loading"})
+    @Description("Mapping, checking and copying a saved network")
+    @StackTrace(false)
+    static class ModelLoadEvent extends Event {
+
+        @Label("File")
+        String file;
+
+        @Label("Layout")
+        String layout;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name("digits.DataLoad")
+    @Label("Data Load")
+    @Category({"Handwritten Digits", "Loading"})
+    @Description("Loading the MNist data from the MNist files")
+    @StackTrace(false)
+    static class DataLoadEvent extends Event {
+
+        @Label("Directory")
+        String directory;
+
+        @Label("Training Images")
+        int trainingImages;
+
+        @Label("Test Images")
+        int testImages;
+    }
+
+    @Name("digits.IdxMap")
+    @Label("IDX Map")
+    @Category({"Handwritten Digits", "Loading"})
+    @Description("Mapping the four MNist files and checking their headers")
+    @StackTrace(false)
+    static class IdxMapEvent extends Event {
+
+        @Label("Directory")
+        String directory;
+
+        @Label("Image Size")
+        int imageSize;
+
+        @Label("Training Images")
+        int trainingImages;
+
+        @Label("Test Images")
+        int testImages;
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public class FloatDenseMatrix {
+
+    // Row-major storage, element (i, j) is at data[offset + i * stride + j].
+    private final float[] data;
+    private final int offset, rows, cols, stride;
+
+    /**
+     * Creates a rows x cols single precision matrix filled with zeros.
+     */
+
+    public FloatDenseMatrix(int rows, int cols) {
+        this(new float[rows * cols], 0, rows, cols, cols);
+    }
+
+    /**
+     * Creates a matrix backed by the given array, nothing is copied.
+     * @param data The backing array.
+     * @param offset The index of element (0, 0) in data.
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @param stride The distance in data between the start of two consecutive rows.
+     */
+
+    public FloatDenseMatrix(float[] data, int offset, int rows, int cols, int stride) {
+        if(rows < 0 || cols < 0 || stride < cols || offset < 0 || (rows > 0 && offset + (rows - 1) * stride + cols > data.length))
+            throw new IllegalArgumentException("Illegal matrix dimensions.");
+        this.data = data;
+        this.offset = offset;
+        this.rows = rows;
+        this.cols = cols;
+        this.stride = stride;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * Returns the backing array of this matrix. Element (i, j) is at index(i, j).
+     */
+
+    public float[] data() {
+        return data;
+    }
+
+    /**
+     * Returns the index of element (i, j) in the backing array.
+     */
+
+    public int index(int i, int j) {
+        return offset + i * stride + j;
+    }
+
+    public float get(int i, int j) {
+        return data[index(i, j)];
+    }
+
+    public void set(int i, int j, float value) {
+        data[index(i, j)] = value;
+    }
+
+    /**
+     * Returns the rows start to start + count as a view sharing storage with this matrix.
+     */
+
+    public FloatDenseMatrix rows(int start, int count) {
+        if(start < 0 || start + count > rows)
+            throw new IndexOutOfBoundsException("Rows " + start + " to " + (start + count) + " outside of " + rows);
+        return new FloatDenseMatrix(data, index(start, 0), count, cols, stride);
+    }
+
+    /**
+     * Sets every element of this matrix to the given value.
+     */
+
+    public void fill(float value) {
+        for(int i = 0; i < rows; i++) {
+            int start = index(i, 0);
+            Arrays.fill(data, start, start + cols, value);
+        }
+    }
+
+    /**
+     * Copies the given vector into row i of this matrix.
+     */
+
+    public void setRow(int i, float[] vector) {
+        if(vector.length != cols)
+            throw new IllegalArgumentException("Illegal vector dimensions. " + vector.length + " != " + cols);
+        System.arraycopy(vector, 0, data, index(i, 0), cols);
+    }
+
+    /**
+     * Returns a copy of row i.
+     */
+
+    public float[] getRow(int i) {
+        float[] result = new float[cols];
+        System.arraycopy(data, index(i, 0), result, 0, cols);
+        return result;
+    }
+}
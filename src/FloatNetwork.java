@@ -0,0 +1,300 @@
+import Math.Sigmoid;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public class FloatNetwork {
+
+    private final FloatDenseMatrix[] weights;
+    private final float[][] bias;
+    private final Random randomizer;
+    private FloatWorkspace workspace, testWorkspace;
+
+    // Scratch space for predict(), one per calling thread.
+    private final ThreadLocal<FloatWorkspace> predictionWorkspace;
+
+    // The sigmoid used as activation, chosen with -Dsigmoid=exact|table|rational.
+    private static final Sigmoid SIGMOID = Sigmoid.select();
+
+    /**
+     * A single precision version of Network. Weights, biases, activations and gradients are all stored as floats, which
+     * halves the memory and memory bandwidth they need and fits twice as many values in a vector register. Training
+     * runs on one thread.
+     * layout = [inputSize, numOfNeurons, numOfNeuron, ... , outputSize];
+     *                      layer 0       layer 1              last layer
+     */
+
+    FloatNetwork(int[] layout) {
+        this(layout, new Random().nextLong());
+    }
+
+    /**
+     * Creates a single precision network where the initial weights and the order of the images in every epoch follow
+     * from the seed.
+     */
+
+    FloatNetwork(int[] layout, long seed) {
+        randomizer = new Random(seed);
+        int layers = layout.length - 1;
+        weights = new FloatDenseMatrix[layers];
+        bias = new float[layers][];
+        for (int i = 0; i < layers; i++) {
+            weights[i] = initWeights(layout[i], layout[i + 1], randomizer);
+            bias[i] = initBias(layout[i + 1], randomizer);
+        }
+        predictionWorkspace = ThreadLocal.withInitial(() -> new FloatWorkspace(weights, 1, false));
+    }
+
+    /**
+     * Initializes the weights of this network.
+     */
+
+    private FloatDenseMatrix initWeights(int numOfWeights, int numOfNeurons, Random randomizer) {
+        FloatDenseMatrix result = new FloatDenseMatrix(numOfNeurons, numOfWeights);
+        for(int i = 0; i < result.rows(); i++) {
+            for(int j = 0; j < result.cols(); j++) {
+                result.set(i, j, (float) randomizer.nextGaussian());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Initializes the biases of this network.
+     */
+
+    private float[] initBias(int numOfNeurons, Random randomizer) {
+        float[] result = new float[numOfNeurons];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = (float) randomizer.nextGaussian();
+        }
+        return result;
+    }
+
+    /**
+     * Runs training on this network and prints a result of the testing.
+     * Once the workspace is allocated for the first batch a training step does not allocate anything.
+     * @param trainingSet Training images and labels to train on.
+     * @param testSet Testing images and labels to test on.
+     * @param batchSize The batch size of each batch in each epoch.
+     * @param learningRate The learning rate for the training.
+     * @param epochs How many epochs the network should train for.
+     */
+
+    void training(Dataset trainingSet, Dataset testSet, int batchSize, double learningRate, int epochs) {
+        int totalBatches = trainingSet.size() / batchSize;
+        if(workspace == null || workspace.rows() != batchSize)
+            workspace = new FloatWorkspace(weights, batchSize, true);
+        EpochSampler sampler = new EpochSampler(trainingSet.size(), randomizer.nextLong());
+        int[] labels = new int[batchSize];
+        long startTime = System.nanoTime();
+        for(int i = 0; i < epochs; i++) {
+            sampler.shuffle();
+            for(int j = 0; j < totalBatches; j++) {
+                workspace.resetError();
+                sampler.gather(trainingSet, j * batchSize, workspace.input, labels);
+                feedForward(workspace, workspace.input);
+                backPropagate(workspace, labels);
+                doGradientDescent(workspace, learningRate, batchSize);
+            }
+            int correctImages = countCorrect(testSet, batchSize);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.out.println("Epoch: " + i + " Correct Images: " + correctImages + "/" + testSet.size() + " Time: " + String.format("%.2fs", seconds));
+        }
+    }
+
+    /**
+     * Runs stochastic gradient descent on this network.
+     */
+
+    private void doGradientDescent(FloatWorkspace workspace, double learningRate, int batchSize) {
+        float gradient = (float) (learningRate / (double) batchSize);
+        for(int i = 0; i < weights.length; i++) {
+            Matrix.scaledAdditionInto(weights[i], workspace.totalWeightError[i], -gradient);
+            Matrix.scaledAdditionInto(bias[i], workspace.totalBiasError[i], -gradient);
+        }
+    }
+
+    /**
+     * Feeds the images forward in this network and counts how many of them are classified correctly.
+     * @param dataset The images and labels to test on.
+     * @param batchSize The number of images fed forward at a time.
+     * @return Returns the number of correctly classified images.
+     */
+
+    int countCorrect(Dataset dataset, int batchSize) {
+        if(testWorkspace == null || testWorkspace.rows() != batchSize)
+            testWorkspace = new FloatWorkspace(weights, batchSize, false);
+        int correctImages = 0;
+        for(int i = 0; i < dataset.size(); i += batchSize) {
+            FloatWorkspace workspace = testWorkspace.head(Math.min(batchSize, dataset.size() - i));
+            dataset.copyBatch(i, workspace.input);
+            FloatDenseMatrix output = feedForward(workspace, workspace.input);
+            for(int j = 0; j < output.rows(); j++) {
+                if(highest(output, j) == dataset.label(i + j))
+                    correctImages++;
+            }
+        }
+        return correctImages;
+    }
+
+    /**
+     * Classifies the given image. This only reads the network and uses scratch space local to the calling thread,
+     * so any number of threads may call it at the same time, as long as the network is not being trained meanwhile.
+     * @param image The image to classify.
+     * @return Returns the predicted digit and the output of every neuron in the output layer.
+     */
+
+    public Prediction predict(float[] image) {
+        FloatWorkspace workspace = predictionWorkspace.get();
+        workspace.input.setRow(0, image);
+        FloatDenseMatrix output = feedForward(workspace, workspace.input);
+        double[] scores = new double[output.cols()];
+        for(int i = 0; i < scores.length; i++) {
+            scores[i] = output.get(0, i);
+        }
+        return new Prediction(highest(output, 0), scores);
+    }
+
+    /**
+     * Feeds a batch of inputs forward in this network.
+     * @return The output of this network, one row per image in the batch.
+     */
+
+    private FloatDenseMatrix feedForward(FloatWorkspace workspace, FloatDenseMatrix input) {
+        FloatDenseMatrix layerInput = input;
+        for(int layer = 0; layer < weights.length; layer++) {
+            FloatDenseMatrix weightedInput = workspace.weightedInput[layer];
+            FloatDenseMatrix activation = workspace.activation[layer];
+            Matrix.multiplicationTransposedInto(weightedInput, layerInput, weights[layer], false);
+            Matrix.addInto(weightedInput, weightedInput, bias[layer]);
+            for(int i = 0; i < activation.rows(); i++) {
+                SIGMOID.apply(weightedInput.data(), weightedInput.index(i, 0), activation.data(), activation.index(i, 0), activation.cols());
+            }
+            layerInput = activation;
+        }
+        return layerInput;
+    }
+
+    /**
+     * Backpropagates the batch in the workspace and adds its gradients to the workspace.
+     */
+
+    private void backPropagate(FloatWorkspace workspace, int[] labels) {
+        int last = weights.length - 1;
+        FloatDenseMatrix output = workspace.activation[last];
+        FloatDenseMatrix outputError = workspace.error[last];
+        float[] a = output.data(), e = outputError.data();
+        for(int i = 0; i < outputError.rows(); i++) {
+            int aRow = output.index(i, 0), eRow = outputError.index(i, 0);
+            for(int j = 0; j < outputError.cols(); j++) {
+                e[eRow + j] = a[aRow + j] - (j == labels[i] ? 1.0f : 0.0f);
+            }
+        }
+        multiplySigmoidPrime(outputError, output);
+        for(int layer = last; layer >= 0; layer--) {
+            FloatDenseMatrix error = workspace.error[layer];
+            if(layer > 0) {
+                Matrix.multiplicationInto(workspace.error[layer - 1], error, weights[layer], false);
+                multiplySigmoidPrime(workspace.error[layer - 1], workspace.activation[layer - 1]);
+            }
+            FloatDenseMatrix input = layer == 0 ? workspace.input : workspace.activation[layer - 1];
+            Matrix.columnSumInto(workspace.totalBiasError[layer], error, true);
+            Matrix.transposedMultiplicationInto(workspace.totalWeightError[layer], error, input, true);
+        }
+    }
+
+    /**
+     * Multiplies each index of the error with the sigmoid prime of the same index, a * (1 - a) calculated from the
+     * activation a. Done row by row on the arrays in single precision, which the JIT vectorizes.
+     */
+
+    private static void multiplySigmoidPrime(FloatDenseMatrix error, FloatDenseMatrix activation) {
+        float[] e = error.data(), a = activation.data();
+        int cols = error.cols();
+        for(int i = 0; i < error.rows(); i++) {
+            int eRow = error.index(i, 0), aRow = activation.index(i, 0);
+            for(int j = 0; j < cols; j++) {
+                float value = a[aRow + j];
+                e[eRow + j] *= value * (1.0f - value);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the highest value in the given row of the output, which is the digit the network predicts.
+     */
+
+    private static int highest(FloatDenseMatrix output, int row) {
+        int highest = 0;
+        for(int i = 0; i < output.cols(); i++) {
+            if(output.get(row, i) >= output.get(row, highest))
+                highest = i;
+        }
+        return highest;
+    }
+
+    /**
+     * Single precision buffers for one batch, see Workspace.
+     */
+
+    private static class FloatWorkspace {
+
+        final FloatDenseMatrix input;
+        final FloatDenseMatrix[] weightedInput, activation, error, totalWeightError;
+        final float[][] totalBiasError;
+
+        FloatWorkspace(FloatDenseMatrix[] weights, int rows, boolean training) {
+            int layers = weights.length;
+            input = new FloatDenseMatrix(rows, weights[0].cols());
+            weightedInput = new FloatDenseMatrix[layers];
+            activation = new FloatDenseMatrix[layers];
+            error = training ? new FloatDenseMatrix[layers] : null;
+            totalWeightError = training ? new FloatDenseMatrix[layers] : null;
+            totalBiasError = training ? new float[layers][] : null;
+            for(int i = 0; i < layers; i++) {
+                int neurons = weights[i].rows();
+                weightedInput[i] = new FloatDenseMatrix(rows, neurons);
+                activation[i] = new FloatDenseMatrix(rows, neurons);
+                if(training) {
+                    error[i] = new FloatDenseMatrix(rows, neurons);
+                    totalWeightError[i] = new FloatDenseMatrix(neurons, weights[i].cols());
+                    totalBiasError[i] = new float[neurons];
+                }
+            }
+        }
+
+        private FloatWorkspace(FloatWorkspace workspace, int rows) {
+            int layers = workspace.weightedInput.length;
+            input = workspace.input.rows(0, rows);
+            weightedInput = new FloatDenseMatrix[layers];
+            activation = new FloatDenseMatrix[layers];
+            for(int i = 0; i < layers; i++) {
+                weightedInput[i] = workspace.weightedInput[i].rows(0, rows);
+                activation[i] = workspace.activation[i].rows(0, rows);
+            }
+            error = null;
+            totalWeightError = null;
+            totalBiasError = null;
+        }
+
+        int rows() {
+            return input.rows();
+        }
+
+        FloatWorkspace head(int rows) {
+            return rows == rows() ? this : new FloatWorkspace(this, rows);
+        }
+
+        void resetError() {
+            for(int i = 0; i < totalBiasError.length; i++) {
+                Arrays.fill(totalBiasError[i], 0.0f);
+                totalWeightError[i].fill(0.0f);
+            }
+        }
+    }
+}
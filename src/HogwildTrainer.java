@@ -0,0 +1,193 @@
+import Math.Activation;
+import Math.Loss;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class HogwildTrainer {
+
+    // Number of test images fed forward at a time when testing after each epoch.
+    private static final int TEST_BATCH_SIZE = 100;
+
+    private final Network network;
+    private final DenseMatrix[] weights;
+    private final double[][] bias;
+    private final Activation[] activations;
+    private final int threads;
+    private final Random randomizer;
+
+    // State of the current epoch, written before the workers are started.
+    private final AtomicInteger nextImage = new AtomicInteger();
+    private Dataset dataset;
+    private EpochSampler sampler;
+    private double learningRate;
+    private Loss loss;
+
+    /**
+     * An alternative to Network.training() that trains the network one image at a time on several threads, where every
+     * thread updates the weights and biases of the network directly without any locking. Updates from different threads
+     * may overwrite each other, but the first layer is only updated at the pixels that are non-zero in the image, so
+     * for sparse images like MNist two threads rarely write to the same weight.
+     * @param network The network to train, its weights and biases are updated in place.
+     * @param threads How many threads to train on.
+     */
+
+    HogwildTrainer(Network network, int threads) {
+        this(network, threads, new Random().nextLong());
+    }
+
+    /**
+     * Creates a trainer where the order of the images in every epoch follows from the seed. The order in which the
+     * threads apply their updates still differs between runs.
+     * @param network The network to train, its weights and biases are updated in place.
+     * @param threads How many threads to train on.
+     * @param seed The seed of the randomizer.
+     */
+
+    HogwildTrainer(Network network, int threads, long seed) {
+        if(threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive but was " + threads);
+        this.network = network;
+        this.weights = network.getWeights();
+        this.bias = network.getBias();
+        this.activations = network.getLayout().activations();
+        this.threads = threads;
+        this.randomizer = new Random(seed);
+    }
+
+    /**
+     * Runs training on the network and prints the amount of correct test images, the number of images trained per second
+     * and the time since training started after each epoch. Also prints the time it took to first reach the target
+     * accuracy, to compare against Network.training().
+     * @param trainingSet Training images and labels to train on.
+     * @param testSet Testing images and labels to test on.
+     * @param learningRate The learning rate for each image.
+     * @param epochs How many epochs the network should train for.
+     * @param targetAccuracy The fraction of correct test images to report the time for, e.g. 0.94.
+     */
+
+    void training(Dataset trainingSet, Dataset testSet, double learningRate, int epochs, double targetAccuracy) {
+        this.dataset = trainingSet;
+        this.learningRate = learningRate;
+        this.loss = network.getLoss();
+        sampler = new EpochSampler(trainingSet.size(), randomizer.nextLong());
+        List<Worker> workers = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            workers.add(new Worker());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long startTime = System.nanoTime();
+        boolean reachedTarget = false;
+        try {
+            for(int i = 0; i < epochs; i++) {
+                sampler.shuffle();
+                nextImage.set(0);
+                long epochStart = System.nanoTime();
+                for(Future<Void> future : executor.invokeAll(workers)) {
+                    future.get();
+                }
+                double epochSeconds = (System.nanoTime() - epochStart) / 1e9;
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                Network.Evaluation evaluation = network.evaluate(testSet, TEST_BATCH_SIZE);
+                int correctImages = evaluation.correct;
+                System.out.println("Epoch: " + i + " Correct Images: " + correctImages + "/" + testSet.size()
+                        + " Loss: " + String.format("%.4f", evaluation.loss)
+                        + " Samples/s: " + String.format("%.0f", sampler.size() / epochSeconds)
+                        + " Time: " + String.format("%.2fs", seconds));
+                if(!reachedTarget && correctImages >= targetAccuracy * testSet.size()) {
+                    reachedTarget = true;
+                    System.out.println("Reached " + targetAccuracy * 100 + "% after " + String.format("%.2fs", seconds));
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Training failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Takes images from the shared order until the epoch is done and trains on them one at a time.
+     * Every worker has its own buffers, so only the weights and biases are shared.
+     */
+
+    private class Worker implements Callable<Void> {
+
+        private final double[] input;
+        private final double[][] weightedInput, activation, error;
+        private final int[] nonZero;
+
+        Worker() {
+            int layers = weights.length;
+            weightedInput = new double[layers][];
+            activation = new double[layers][];
+            error = new double[layers][];
+            for(int i = 0; i < layers; i++) {
+                weightedInput[i] = new double[weights[i].rows()];
+                activation[i] = new double[weights[i].rows()];
+                error[i] = new double[weights[i].rows()];
+            }
+            input = new double[weights[0].cols()];
+            nonZero = new int[weights[0].cols()];
+        }
+
+        @Override
+        public Void call() {
+            int i;
+            while((i = nextImage.getAndIncrement()) < sampler.size()) {
+                train(sampler.get(i));
+            }
+            return null;
+        }
+
+        /**
+         * Normalizes the image, feeds it forward, backpropagates it and applies its gradient to the network straight away.
+         */
+
+        private void train(int image) {
+            dataset.copyImage(image, input);
+            int label = dataset.label(image);
+            int layers = weights.length;
+            double[] layerInput = input;
+            for(int l = 0; l < layers; l++) {
+                Matrix.multiplicationInto(weightedInput[l], weights[l], layerInput, false);
+                for(int j = 0; j < weightedInput[l].length; j++) {
+                    weightedInput[l][j] += bias[l][j];
+                }
+                activations[l].apply(weightedInput[l], 0, activation[l], 0, activation[l].length);
+                layerInput = activation[l];
+            }
+            int last = layers - 1;
+            loss.outputError(activations[last], activation[last], 0, activation[last].length, label, error[last], 0);
+            for(int l = last; l >= 0; l--) {
+                // The error of the layer below uses the weights before this image's update.
+                if(l > 0) {
+                    Matrix.transposedMultiplicationInto(error[l - 1], weights[l], error[l], false);
+                    activations[l - 1].multiplyDerivative(activation[l - 1], 0, error[l - 1], 0, error[l - 1].length);
+                    Matrix.rankOneUpdateInto(weights[l], -learningRate, error[l], activation[l - 1]);
+                } else {
+                    int count = 0;
+                    for(int j = 0; j < input.length; j++) {
+                        if(input[j] != 0.0)
+                            nonZero[count++] = j;
+                    }
+                    Matrix.rankOneUpdateInto(weights[0], -learningRate, error[0], input, nonZero, count);
+                }
+                Matrix.scaledAdditionInto(bias[l], error[l], -learningRate);
+            }
+        }
+    }
+}
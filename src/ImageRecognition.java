@@ -1,4 +1,8 @@
+import Math.Loss;
+
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * @author Kenny Brink - kebri18@student.sdu.dk
@@ -9,14 +13,27 @@ public class ImageRecognition {
     // File Directory for MNist data
     private static final String DIRECTORY = System.getProperty("user.dir") + "/MNistData";
 
+    // File the trained network is saved to, it can be loaded again with Network.load().
+    private static final Path MODEL_FILE = Paths.get(System.getProperty("user.dir"), "network.model");
+
     //Hyper Parameters
     //Personally the best hyper parameters i have seen this far with this set up.
     private static final int EPOCHS = 30, BATCH_SIZE = 10;
     private static final double LEARNING_RATE = 3;
 
-    // Data
-    private static double[][] trainingImages, testImages;
-    private static int[] trainingLabels, testLabels;
+    // Neurons and activation of each layer, e.g. "784-100:relu-10:softmax", see Layout. Layers without an activation
+    // use the sigmoid. This seems to be the best network setup with the current setup.
+    private static final String LAYOUT = "784-30-10";
+
+    // Loss minimized by training. Cross-entropy (with a sigmoid output) or log-likelihood (with a softmax output) do not
+    // slow down on saturated output neurons and reach the same accuracy in fewer epochs, with a learning rate around 0.5.
+    private static final Loss LOSS = Loss.QUADRATIC;
+
+    // Train in single precision, which halves the memory used by the network.
+    private static final boolean SINGLE_PRECISION = false;
+
+    // Data, the images are raw pixels that are normalized as they are fed to the network.
+    private static Dataset trainingSet, testSet;
 
     /**
      * @param args the command line arguments
@@ -27,16 +44,26 @@ public class ImageRecognition {
             Data reader;
         try {
             reader = new Data(DIRECTORY);
-            trainingImages = reader.getTrainingImages();
-            trainingLabels =  reader.getTrainingLabels();
-            testImages = reader.getTestImages();
-            testLabels = reader.getTestLabels();
+            trainingSet = reader.getTrainingSet();
+            testSet = reader.getTestSet();
         } catch(IOException ignored) {
         }
-        // This seems to be the best network setup with the current setup.
-        int[] layout = {784, 30, 10};
-        Network net = new Network(layout);
-        net.training(trainingImages, trainingLabels, testImages, testLabels, BATCH_SIZE, LEARNING_RATE, EPOCHS);
+        Layout layout = Layout.parse(LAYOUT);
+        if(SINGLE_PRECISION) {
+            if(!layout.isSigmoid() || LOSS != Loss.QUADRATIC)
+                throw new IllegalStateException("The single precision network only uses the sigmoid and the quadratic loss");
+            FloatNetwork net = new FloatNetwork(layout.neurons());
+            net.training(trainingSet, testSet, BATCH_SIZE, LEARNING_RATE, EPOCHS);
+        } else {
+            Network net = new Network(layout);
+            net.setLoss(LOSS);
+            net.training(trainingSet, testSet, BATCH_SIZE, LEARNING_RATE, EPOCHS);
+            try {
+                net.save(MODEL_FILE);
+            } catch(IOException e) {
+                System.out.println("Could not save the network to " + MODEL_FILE + ": " + e.getMessage());
+            }
+        }
     }
 
 }
@@ -0,0 +1,533 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class InferenceServer {
+
+    // Magic header of an IDX image file, see MNistDataReader.
+    private static final int IDX_IMAGE_MAGIC = 0x803, IDX_HEADER_SIZE = 16;
+
+    // Most images accepted in one request. A pixel takes 8 bytes once normalized, so 1024 MNist images are 6.4 MB.
+    static final int MAX_IMAGES = 1024;
+
+    // Longest accepted JSON per pixel and per image, a pixel is "255, " and an image adds its brackets and a line break.
+    private static final int MAX_JSON_BYTES_PER_PIXEL = 5, MAX_JSON_BYTES_PER_IMAGE = 16;
+
+    // Deepest nesting of arrays and objects accepted in JSON, a request needs 3.
+    private static final int MAX_JSON_DEPTH = 16;
+
+    private static final Logger LOGGER = Logger.getLogger(InferenceServer.class.getName());
+
+    private final Function<double[][], Prediction[]> predictor;
+    private final Normalization normalization;
+    private final int imageSize, maxPixelBodySize, maxJsonBodySize;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Metrics, every counter can be updated by any number of requests at once.
+    private final LongAdder requests = new LongAdder(), images = new LongAdder(), errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * Serves predictions of a trained network over HTTP.
+     * POST /predict takes one or more images and answers with the predicted digit and the scores of each. The images
+     * can be sent as raw pixels (application/octet-stream, one unsigned byte per pixel, any number of whole images), as
+     * an IDX image file like the MNist files, or as JSON, {"image": [pixels]} or {"images": [[pixels], ...]} with pixel
+     * values from 0 to 255. The pixels are normalized the same way as when the network was trained.
+     * A request holds at most MAX_IMAGES images, larger requests are answered with 413 before their images are read.
+     * GET /metrics answers with the number of requests, images and errors and the latency percentiles of /predict.
+     * Requests run on a fixed pool of two threads per processor, so one can read a request while the other predicts.
+     * The network keeps the buffers of a prediction per thread, and a pooled thread reuses them for every request it
+     * handles, where a new thread per request would allocate them again.
+     * @param network The network to predict with.
+     * @param normalization The normalization the network was trained with.
+     * @param port The port to listen on, 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+
+    InferenceServer(Network network, Normalization normalization, int port) throws IOException {
+        this(input -> input.length == 1 ? new Prediction[] {network.predict(input[0])} : network.predictBatch(input),
+             network.getWeights()[0].cols(), normalization, port);
+    }
+
+    /**
+     * Serves the predictions of any predictor, lets tests stand in for the network.
+     * @param predictor Predicts normalized images, one row per image.
+     * @param imageSize The number of pixels of an image.
+     */
+
+    InferenceServer(Function<double[][], Prediction[]> predictor, int imageSize, Normalization normalization, int port)
+            throws IOException {
+        this.predictor = predictor;
+        this.normalization = normalization;
+        this.imageSize = imageSize;
+        maxPixelBodySize = IDX_HEADER_SIZE + MAX_IMAGES * imageSize;
+        maxJsonBodySize = MAX_IMAGES * (imageSize * MAX_JSON_BYTES_PER_PIXEL + MAX_JSON_BYTES_PER_IMAGE);
+        executor = Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors());
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/predict", this::predict);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the given number of seconds for running requests and stops the threads.
+     */
+
+    void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles POST /predict.
+     */
+
+    private void predict(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        try(exchange) {
+            try {
+                answerPrediction(exchange);
+            } catch(RuntimeException e) {
+                // A bug rather than a bad request, the client still gets an answer instead of a closed connection, but
+                // the details of the failure stay in the log of the server.
+                LOGGER.log(Level.SEVERE, "Failed to answer " + exchange.getRequestURI(), e);
+                if(exchange.getResponseCode() != -1) {
+                    errors.increment();
+                    throw e;
+                }
+                error(exchange, 500, "Internal error");
+            }
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Parses the images of a /predict request and answers with their predictions.
+     */
+
+    private void answerPrediction(HttpExchange exchange) throws IOException {
+        if(!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            error(exchange, 405, "Use POST");
+            return;
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        double[][] input;
+        try {
+            input = parse(contentType, readBody(exchange, isJson(contentType) ? maxJsonBodySize : maxPixelBodySize));
+        } catch(TooLargeException e) {
+            error(exchange, 413, e.getMessage());
+            return;
+        } catch(IllegalArgumentException e) {
+            error(exchange, 400, e.getMessage());
+            return;
+        }
+        Prediction[] predictions = predictor.apply(input);
+        images.add(predictions.length);
+        send(exchange, 200, toJson(predictions));
+    }
+
+    /**
+     * Handles GET /metrics.
+     */
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try(exchange) {
+            String body = "{\"uptimeMillis\":" + (System.currentTimeMillis() - startTime)
+                    + ",\"requests\":" + requests.sum()
+                    + ",\"images\":" + images.sum()
+                    + ",\"errors\":" + errors.sum()
+                    + ",\"latency\":" + latency.toJson() + "}";
+            send(exchange, 200, body);
+        }
+    }
+
+    /**
+     * Reads the request body, no more than one byte past the given size is read if it is larger.
+     * @throws TooLargeException if the body is larger than maxSize.
+     */
+
+    private static byte[] readBody(HttpExchange exchange, int maxSize) throws IOException {
+        try(InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(maxSize + 1);
+            if(body.length > maxSize)
+                throw new TooLargeException("Request body is larger than " + maxSize + " bytes");
+            return body;
+        }
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.contains("json");
+    }
+
+    /**
+     * Turns a request body into normalized images.
+     * @param contentType The content type of the request, may be null.
+     * @param body The request body.
+     * @return One row per image.
+     * @throws IllegalArgumentException if the body is not one of the accepted formats or holds no images.
+     * @throws TooLargeException if the body holds more than MAX_IMAGES images.
+     */
+
+    double[][] parse(String contentType, byte[] body) {
+        if(body.length == 0)
+            throw new IllegalArgumentException("Request body is empty");
+        if(isJson(contentType))
+            return parseJson(new String(body, StandardCharsets.UTF_8));
+        if(body.length >= IDX_HEADER_SIZE && ByteBuffer.wrap(body).getInt(0) == IDX_IMAGE_MAGIC)
+            return parseIdx(body);
+        return parseRaw(body, 0, body.length);
+    }
+
+    /**
+     * Parses raw pixels, one unsigned byte per pixel and any number of whole images.
+     */
+
+    private double[][] parseRaw(byte[] body, int offset, int length) {
+        if(length == 0 || length % imageSize != 0)
+            throw new IllegalArgumentException("Expected a multiple of " + imageSize + " pixels but received " + length);
+        checkImages(length / imageSize);
+        ByteBuffer pixels = ByteBuffer.wrap(body);
+        double[][] result = new double[length / imageSize][imageSize];
+        for(int i = 0; i < result.length; i++) {
+            normalization.apply(pixels, offset + i * imageSize, result[i], 0, imageSize);
+        }
+        return result;
+    }
+
+    /**
+     * Parses an IDX image file, the header must agree with the size of the network and of the body.
+     * Magic header for images: 2051 or 0x803.
+     */
+
+    private double[][] parseIdx(byte[] body) {
+        ByteBuffer header = ByteBuffer.wrap(body);
+        int count = header.getInt(4);
+        long pixels = (long) header.getInt(8) * header.getInt(12);
+        if(pixels != imageSize)
+            throw new IllegalArgumentException("Expected images of " + imageSize + " pixels but the header says " + pixels);
+        if(count <= 0 || (long) count * imageSize != body.length - IDX_HEADER_SIZE)
+            throw new IllegalArgumentException("Header says " + count + " images but found " + (body.length - IDX_HEADER_SIZE) + " bytes of pixels");
+        return parseRaw(body, IDX_HEADER_SIZE, body.length - IDX_HEADER_SIZE);
+    }
+
+    /**
+     * Parses {"image": [pixels]} or {"images": [[pixels], ...]}.
+     */
+
+    private double[][] parseJson(String body) {
+        Object value = new JsonParser(body).parse();
+        if(!(value instanceof Map))
+            throw new IllegalArgumentException("Expected a JSON object");
+        Map<?, ?> object = (Map<?, ?>) value;
+        if(object.containsKey("image"))
+            return new double[][] {toImage(object.get("image"))};
+        if(!(object.get("images") instanceof List) || ((List<?>) object.get("images")).isEmpty())
+            throw new IllegalArgumentException("Expected \"image\" or a non empty array \"images\"");
+        List<?> list = (List<?>) object.get("images");
+        checkImages(list.size());
+        double[][] result = new double[list.size()][];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = toImage(list.get(i));
+        }
+        return result;
+    }
+
+    private static void checkImages(int count) {
+        if(count > MAX_IMAGES)
+            throw new TooLargeException("Request holds " + count + " images but at most " + MAX_IMAGES + " are accepted");
+    }
+
+    /**
+     * Turns a JSON array of pixel values between 0 and 255 into a normalized image.
+     */
+
+    private double[] toImage(Object value) {
+        if(!(value instanceof List) || ((List<?>) value).size() != imageSize)
+            throw new IllegalArgumentException("Expected an array of " + imageSize + " pixels");
+        List<?> list = (List<?>) value;
+        byte[] pixels = new byte[imageSize];
+        for(int i = 0; i < imageSize; i++) {
+            Object pixel = list.get(i);
+            if(!(pixel instanceof Double) || (Double) pixel < 0 || (Double) pixel > 255 || (Double) pixel % 1 != 0)
+                throw new IllegalArgumentException("Pixel " + i + " is not a whole number between 0 and 255: " + pixel);
+            pixels[i] = (byte) ((Double) pixel).intValue();
+        }
+        return normalization.apply(pixels);
+    }
+
+    /**
+     * Returns the predictions as {"predictions": [{"digit": d, "scores": [...]}, ...]}.
+     */
+
+    static String toJson(Prediction[] predictions) {
+        StringBuilder json = new StringBuilder("{\"predictions\":[");
+        for(int i = 0; i < predictions.length; i++) {
+            if(i > 0)
+                json.append(',');
+            json.append("{\"digit\":").append(predictions[i].getDigit()).append(",\"scores\":[");
+            double[] scores = predictions[i].getScores();
+            for(int j = 0; j < scores.length; j++) {
+                if(j > 0)
+                    json.append(',');
+                json.append(scores[j]);
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private void error(HttpExchange exchange, int status, String message) throws IOException {
+        errors.increment();
+        send(exchange, status, "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Starts a server.
+     * @param args The model file written by Network.save(), optionally followed by the port (default 8080) and the
+     *             normalization the network was trained with, sigmoid (default) or scaled.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.out.println("Usage: InferenceServer <model file> [port] [sigmoid|scaled]");
+            return;
+        }
+        Path model = Paths.get(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        Normalization normalization = args.length > 2 && args[2].equals("scaled") ? Normalization.scaled() : Normalization.sigmoid();
+        // The JDK server writes the headers and the body of a response separately, with Nagle's algorithm on the body
+        // then waits for the delayed acknowledgement of the headers, which adds 40 ms to every request.
+        if(System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        InferenceServer server = new InferenceServer(Network.load(model), normalization, port);
+        server.start();
+        System.out.println("Serving " + model + " on port " + server.port() + " with " + normalization + " normalization");
+    }
+
+    /**
+     * Thrown when a request holds more images than are accepted, answered with 413 instead of 400.
+     */
+
+    @SuppressWarnings("serial")
+    static class TooLargeException extends IllegalArgumentException {
+
+        TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A small JSON parser, just enough for requests. Objects become maps, arrays lists and numbers doubles.
+     * Values are parsed recursively, so the nesting is limited to MAX_JSON_DEPTH instead of overflowing the stack.
+     */
+
+    private static class JsonParser {
+
+        private final String text;
+        private int position, depth;
+
+        JsonParser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Parses the whole text as one value.
+         * @throws IllegalArgumentException if the text is not valid JSON.
+         */
+
+        Object parse() {
+            Object value = value();
+            skipWhitespace();
+            if(position != text.length())
+                throw fail("Unexpected text after the value");
+            return value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if(position >= text.length())
+                throw fail("Unexpected end of JSON");
+            char c = text.charAt(position);
+            switch(c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default: return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            enter();
+            skipWhitespace();
+            if(peek('}'))
+                return leave(result);
+            do {
+                skipWhitespace();
+                if(position >= text.length() || text.charAt(position) != '"')
+                    throw fail("Expected a key");
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                result.put(key, value());
+                skipWhitespace();
+            } while(peek(','));
+            expect('}');
+            return leave(result);
+        }
+
+        private List<Object> array() {
+            List<Object> result = new ArrayList<>();
+            enter();
+            skipWhitespace();
+            if(peek(']'))
+                return leave(result);
+            do {
+                result.add(value());
+                skipWhitespace();
+            } while(peek(','));
+            expect(']');
+            return leave(result);
+        }
+
+        /**
+         * Steps into an object or array past its opening bracket.
+         */
+
+        private void enter() {
+            if(++depth > MAX_JSON_DEPTH)
+                throw fail("JSON is nested deeper than " + MAX_JSON_DEPTH + " levels");
+            position++;
+        }
+
+        private <T> T leave(T value) {
+            depth--;
+            return value;
+        }
+
+        private String string() {
+            StringBuilder result = new StringBuilder();
+            position++;
+            while(position < text.length()) {
+                char c = text.charAt(position++);
+                if(c == '"')
+                    return result.toString();
+                if(c == '\\') {
+                    if(position >= text.length())
+                        break;
+                    char escaped = text.charAt(position++);
+                    switch(escaped) {
+                        case 'n': result.append('\n'); break;
+                        case 't': result.append('\t'); break;
+                        case 'r': result.append('\r'); break;
+                        case 'b': result.append('\b'); break;
+                        case 'f': result.append('\f'); break;
+                        case 'u':
+                            if(position + 4 > text.length())
+                                throw fail("Illegal unicode escape");
+                            result.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            position += 4;
+                            break;
+                        default: result.append(escaped);
+                    }
+                } else {
+                    result.append(c);
+                }
+            }
+            throw fail("Unterminated string");
+        }
+
+        private Double number() {
+            int start = position;
+            while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            try {
+                return Double.valueOf(text.substring(start, position));
+            } catch(NumberFormatException e) {
+                throw fail("Expected a value");
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if(!text.startsWith(word, position))
+                throw fail("Expected a value");
+            position += word.length();
+            return value;
+        }
+
+        private boolean peek(char c) {
+            if(position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if(!peek(c))
+                throw fail("Expected '" + c + "'");
+        }
+
+        private void skipWhitespace() {
+            while(position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException fail(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of the JSON");
+        }
+    }
+}
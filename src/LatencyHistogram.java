@@ -0,0 +1,116 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class LatencyHistogram {
+
+    // Every power of two is split into 2^SUB_BUCKET_BITS buckets, so a bucket is at most 12.5% wide.
+    private static final int SUB_BUCKET_BITS = 3, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder(), total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Counts latencies in microseconds in logarithmic buckets, so percentiles can be read at any time with a bounded
+     * relative error and a fixed amount of memory. Any number of threads may record at the same time without locking.
+     */
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Records one latency.
+     * @param nanos The latency in nanoseconds.
+     */
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(index(micros));
+        count.increment();
+        total.add(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Returns the bucket of the given value. Values below 2^SUB_BUCKET_BITS have a bucket each.
+     */
+
+    private static int index(long value) {
+        if(value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value that falls in the given bucket.
+     */
+
+    private static long highestValue(int index) {
+        if(index < SUB_BUCKETS)
+            return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean latency in microseconds.
+     */
+
+    double mean() {
+        long count = count();
+        return count == 0 ? 0.0 : (double) total.sum() / count;
+    }
+
+    /**
+     * Returns the highest latency in microseconds.
+     */
+
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the latency in microseconds that the given fraction of the recorded latencies are at or below, rounded up
+     * to the end of its bucket.
+     * @param fraction The fraction, e.g. 0.99 for the 99th percentile.
+     */
+
+    long percentile(double fraction) {
+        long target = (long) Math.ceil(fraction * count());
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= target && seen > 0)
+                return Math.min(highestValue(i), max());
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the count, mean, percentiles and max as a JSON object.
+     */
+
+    String toJson() {
+        return "{\"count\":" + count()
+                + ",\"meanMicros\":" + String.format("%.1f", mean())
+                + ",\"p50Micros\":" + percentile(0.50)
+                + ",\"p90Micros\":" + percentile(0.90)
+                + ",\"p99Micros\":" + percentile(0.99)
+                + ",\"p999Micros\":" + percentile(0.999)
+                + ",\"maxMicros\":" + max() + "}";
+    }
+}
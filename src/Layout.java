@@ -0,0 +1,114 @@
+import Math.Activation;
+
+import java.util.Arrays;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+final class Layout {
+
+    private final int[] neurons;
+    private final Activation[] activations;
+
+    /**
+     * The number of neurons in each layer of a network and the activation of each layer after the input.
+     * As text a layout is the layers separated by '-', each layer its neurons optionally followed by ':' and its
+     * activation, which is the sigmoid if left out, e.g. "784-30-10" or "784-100:relu-10:softmax".
+     * @param neurons The neurons of each layer, the input first.
+     * @param activations The activation of each layer after the input, one shorter than neurons.
+     * @throws IllegalArgumentException if the lengths do not match, a layer has no neurons or a hidden layer is softmax.
+     */
+
+    Layout(int[] neurons, Activation[] activations) {
+        if(neurons.length < 2 || activations.length != neurons.length - 1)
+            throw new IllegalArgumentException("Illegal layout, " + neurons.length + " layers and " + activations.length + " activations");
+        for(int i = 0; i < neurons.length; i++) {
+            if(neurons[i] <= 0)
+                throw new IllegalArgumentException("Illegal layout, layer " + i + " has " + neurons[i] + " neurons");
+        }
+        for(int i = 0; i < activations.length - 1; i++) {
+            if(!activations[i].isElementwise())
+                throw new IllegalArgumentException("Activation " + activations[i] + " is only allowed in the output layer");
+        }
+        this.neurons = neurons.clone();
+        this.activations = activations.clone();
+    }
+
+    /**
+     * Returns a layout with the sigmoid in every layer.
+     */
+
+    static Layout sigmoid(int[] neurons) {
+        Activation[] activations = new Activation[Math.max(0, neurons.length - 1)];
+        Arrays.fill(activations, Activation.SIGMOID);
+        return new Layout(neurons, activations);
+    }
+
+    /**
+     * Reads a layout from text such as "784-100:relu-10:softmax".
+     * @throws IllegalArgumentException if the text is not a layout.
+     */
+
+    static Layout parse(String layout) {
+        String[] layers = layout.trim().split("-");
+        int[] neurons = new int[layers.length];
+        Activation[] activations = new Activation[Math.max(0, layers.length - 1)];
+        for(int i = 0; i < layers.length; i++) {
+            String[] parts = layers[i].trim().split(":", 2);
+            try {
+                neurons[i] = Integer.parseInt(parts[0].trim());
+            } catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Illegal number of neurons in layout " + layout + ": " + parts[0]);
+            }
+            if(i == 0 && parts.length > 1)
+                throw new IllegalArgumentException("The input layer of layout " + layout + " has no activation");
+            if(i > 0)
+                activations[i - 1] = parts.length > 1 ? Activation.of(parts[1].trim()) : Activation.SIGMOID;
+        }
+        return new Layout(neurons, activations);
+    }
+
+    /**
+     * Returns the number of neurons in each layer, the input first.
+     */
+
+    int[] neurons() {
+        return neurons.clone();
+    }
+
+    /**
+     * Returns the activation of each layer after the input.
+     */
+
+    Activation[] activations() {
+        return activations.clone();
+    }
+
+    /**
+     * Returns whether every layer uses the sigmoid, the only activation of FloatNetwork.
+     */
+
+    boolean isSigmoid() {
+        for(Activation activation : activations) {
+            if(activation != Activation.SIGMOID)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the layout as text, leaving out the sigmoid so a sigmoid network reads like "784-30-10".
+     */
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder().append(neurons[0]);
+        for(int i = 0; i < activations.length; i++) {
+            result.append('-').append(neurons[i + 1]);
+            if(activations[i] != Activation.SIGMOID)
+                result.append(':').append(activations[i]);
+        }
+        return result.toString();
+    }
+}
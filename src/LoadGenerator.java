@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class LoadGenerator {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final URI uri;
+    private final byte[][] images;
+    private final int batchSize;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Sends prediction requests to an InferenceServer from a number of concurrent clients and measures the latency of
+     * each request and the throughput of all of them.
+     * @param uri The /predict endpoint of the server.
+     * @param images The images to send, one unsigned byte per pixel.
+     * @param batchSize The number of images in each request.
+     */
+
+    LoadGenerator(URI uri, byte[][] images, int batchSize) {
+        this.uri = uri;
+        this.images = images;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the body of the given request, the next batchSize images after those of the previous request. Bodies are
+     * built when they are sent, building one for every image up front would hold batchSize copies of the images.
+     */
+
+    private byte[] body(int request) {
+        int imageSize = images[0].length;
+        byte[] body = new byte[batchSize * imageSize];
+        long first = (long) request * batchSize;
+        for(int i = 0; i < batchSize; i++) {
+            System.arraycopy(images[(int) ((first + i) % images.length)], 0, body, i * imageSize, imageSize);
+        }
+        return body;
+    }
+
+    /**
+     * Sends the given number of requests, spread over the given number of clients that each wait for the answer
+     * before sending their next request.
+     * @return The time it took in nanoseconds.
+     */
+
+    long run(int clients, int numOfRequests) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = newExecutor();
+        long start = System.nanoTime();
+        for(int i = 0; i < clients; i++) {
+            executor.execute(() -> {
+                int request;
+                while((request = next.getAndIncrement()) < numOfRequests) {
+                    send(body(request));
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns a virtual thread per task executor when the JDK has one (Java 21 and later), otherwise a cached thread
+     * pool, so every client can wait for its answer on its own thread. It is looked up reflectively so the load
+     * generator still compiles and runs on older JDKs.
+     */
+
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void send(byte[] body) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if(response.statusCode() != 200)
+                failures.increment();
+        } catch(IOException e) {
+            failures.increment();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+        }
+        latency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Runs a warm up followed by the measured run and prints the latency percentiles and the throughput.
+     * @param args The server address (default http://localhost:8080), the number of concurrent clients (default 8),
+     *             the number of requests (default 10000), the number of images per request (default 1) and optionally
+     *             the directory of the MNist files to send test images from, otherwise random images are sent.
+     */
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String address = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int numOfRequests = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        byte[][] images;
+        if(args.length > 4) {
+            images = new MNistDataReader(Paths.get(args[4])).getTestImages();
+        } else {
+            images = new byte[1000][784];
+            Random random = new Random(0);
+            for(byte[] image : images) {
+                random.nextBytes(image);
+            }
+        }
+        URI uri = URI.create(address).resolve("/predict");
+        new LoadGenerator(uri, images, batchSize).run(clients, Math.max(1, numOfRequests / 10));
+        LoadGenerator generator = new LoadGenerator(uri, images, batchSize);
+        long time = generator.run(clients, numOfRequests);
+        double seconds = time / 1e9;
+        LatencyHistogram latency = generator.latency;
+        System.out.println(numOfRequests + " requests of " + batchSize + " images from " + clients + " clients in "
+                + String.format("%.2f", seconds) + " s, " + generator.failures.sum() + " failed");
+        System.out.println(String.format("Throughput: %.0f requests/s, %.0f images/s",
+                numOfRequests / seconds, (double) numOfRequests * batchSize / seconds));
+        System.out.println(String.format("Latency: mean %.0f us, p50 %d us, p90 %d us, p99 %d us, max %d us",
+                latency.mean(), latency.percentile(0.50), latency.percentile(0.90), latency.percentile(0.99), latency.max()));
+    }
+}
@@ -1,7 +1,9 @@
-import java.io.DataInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * @author Kenny Brink - kebri18@student.sdu.dk
@@ -15,137 +17,189 @@ class MNistDataReader {
                                 TEST_IMAGE = "t10k-images.idx3-ubyte",
                                 TEST_LABEL = "t10k-labels.idx1-ubyte";
 
-    // Paths for images and labels.
-    private static Path TRAIN_IMAGE_DIRECTORY,
-                        TRAIN_LABEL_DIRECTORY,
-                        TEST_IMAGE_DIRECTORY,
-                        TEST_LABEL_DIRECTORY;
+    // Magic headers and header sizes of the IDX files.
+    private static final int IMAGE_MAGIC = 0x803, LABEL_MAGIC = 0x801,
+                             IMAGE_HEADER_SIZE = 16, LABEL_HEADER_SIZE = 8;
 
-    // Streams to get data from.
-    private DataInputStream trainImageStream,
-                            trainLabelStream,
-                            testImageStream,
-                            testLabelStream;
+    // Read only views of the mapped files starting after the headers, image i starts at i * imageSize.
+    private final ByteBuffer trainImages, trainLabels, testImages, testLabels;
 
-    // Constants aquired through the data streams.
-
-    private int numOfTrainImages, numOfTrainLabels,      numOfTestImages,
-                numOfTestLabels,  numOfRows,             numOfCols;
+    // Constants aquired through the headers.
+    private int numOfTrainImages, numOfTestImages, numOfRows, numOfCols;
 
     /**
-     * Constructs the data reader and initializes it so its ready to give images.
+     * Constructs the data reader and maps the four MNist files into memory. Nothing is read until the pages are
+     * touched, and the pages are shared through the page cache with every other process mapping the same files.
+     * The headers are validated against each other and against the size of the files.
      * @param dataDirectory The directory of the MNist Data files
      * @throws IOException if file is not found or if wrong file is found.
      */
 
     MNistDataReader(Path dataDirectory) throws IOException {
-        TRAIN_IMAGE_DIRECTORY = dataDirectory.resolve(TRAIN_IMAGE);
-        TRAIN_LABEL_DIRECTORY = dataDirectory.resolve(TRAIN_LABEL);
-        TEST_IMAGE_DIRECTORY = dataDirectory.resolve(TEST_IMAGE);
-        TEST_LABEL_DIRECTORY = dataDirectory.resolve(TEST_LABEL);
-        init();
+        FlightEvents.IdxMapEvent event = new FlightEvents.IdxMapEvent();
+        event.begin();
+        trainImages = mapImages(dataDirectory.resolve(TRAIN_IMAGE), true);
+        trainLabels = mapLabels(dataDirectory.resolve(TRAIN_LABEL), numOfTrainImages);
+        testImages = mapImages(dataDirectory.resolve(TEST_IMAGE), false);
+        testLabels = mapLabels(dataDirectory.resolve(TEST_LABEL), numOfTestImages);
+        if(event.shouldCommit()) {
+            event.directory = dataDirectory.toString();
+            event.imageSize = getImageSize();
+            event.trainingImages = numOfTrainImages;
+            event.testImages = numOfTestImages;
+            event.commit();
+        }
     }
 
     /**
-     * Initializes the streams.
-     * @throws IOException if file is not found or if wrong file is found.
+     * Maps an image file and checks its header.
+     * Magic header for images: 2051 or 0x803.
+     * @param path The image file.
+     * @param training Whether the file holds the training images, the test images must have the same size.
+     * @return The pixels of the file, one byte per pixel.
+     * @throws IOException if the header is wrong or does not match the size of the file.
+     */
+
+    private ByteBuffer mapImages(Path path, boolean training) throws IOException {
+        MappedByteBuffer buffer = map(path);
+        if(buffer.capacity() < IMAGE_HEADER_SIZE)
+            throw new IOException("File " + path + " is too small to be an image file");
+        int header = buffer.getInt(0);
+        int images = buffer.getInt(4);
+        int rows = buffer.getInt(8);
+        int cols = buffer.getInt(12);
+        if(header != IMAGE_MAGIC)
+            throw new IOException("Expected magic header \"0x803\" for images in " + path + " but received " + header);
+        if(images < 0 || rows <= 0 || cols <= 0)
+            throw new IOException("Illegal image dimensions in " + path + ": " + images + " x " + rows + " x " + cols);
+        long size = (long) images * rows * cols;
+        if(buffer.capacity() - IMAGE_HEADER_SIZE != size)
+            throw new IOException("Expected " + size + " bytes of pixels in " + path + " but found " + (buffer.capacity() - IMAGE_HEADER_SIZE));
+        if(training) {
+            numOfTrainImages = images;
+            numOfRows = rows;
+            numOfCols = cols;
+        } else {
+            if(rows != numOfRows || cols != numOfCols)
+                throw new IOException("Test images are " + rows + " x " + cols + " but training images are " + numOfRows + " x " + numOfCols);
+            numOfTestImages = images;
+        }
+        return buffer.slice(IMAGE_HEADER_SIZE, (int) size).asReadOnlyBuffer();
+    }
+
+    /**
+     * Maps a label file and checks its header.
+     * Magic header for labels: 2049 or 0x801.
+     * @param path The label file.
+     * @param numOfImages The number of images the labels belong to.
+     * @return The labels of the file, one byte per label.
+     * @throws IOException if the header is wrong or does not match the size of the file or the number of images.
      */
 
-    private void init() throws IOException {
-        trainImageStream = new DataInputStream(new FileInputStream(TRAIN_IMAGE_DIRECTORY.toFile()));
-        trainLabelStream = new DataInputStream(new FileInputStream(TRAIN_LABEL_DIRECTORY.toFile()));
-        testImageStream = new DataInputStream(new FileInputStream(TEST_IMAGE_DIRECTORY.toFile()));
-        testLabelStream = new DataInputStream(new FileInputStream(TEST_LABEL_DIRECTORY.toFile()));
-        magicHeaders();
-        getConstants();
+    private static ByteBuffer mapLabels(Path path, int numOfImages) throws IOException {
+        MappedByteBuffer buffer = map(path);
+        if(buffer.capacity() < LABEL_HEADER_SIZE)
+            throw new IOException("File " + path + " is too small to be a label file");
+        int header = buffer.getInt(0);
+        int labels = buffer.getInt(4);
+        if(header != LABEL_MAGIC)
+            throw new IOException("Expected magic header \"0x801\" for labels in " + path + " but received " + header);
+        if(labels != numOfImages)
+            throw new IOException("Expected " + numOfImages + " labels in " + path + " but the header says " + labels);
+        if(buffer.capacity() - LABEL_HEADER_SIZE != labels)
+            throw new IOException("Expected " + labels + " labels in " + path + " but found " + (buffer.capacity() - LABEL_HEADER_SIZE));
+        return buffer.slice(LABEL_HEADER_SIZE, labels).asReadOnlyBuffer();
     }
 
     /**
-     * Removes the magic headers from all 4 files and checks if they are correct.
-     * Magic header for training images: 2051 or 0x803.
-     * Magic header for training labels: 2049 or 0x801.
-     * Magic header for test images: 20551 or 0x803.
-     * Magic header for test labels: 2049 or 0x801.
-     * @throws IOException if magic header is wrong.
+     * Maps the whole file read only. The mapping stays valid after the channel is closed.
      */
 
-    private void magicHeaders() throws IOException {
-        int trainImageHeader = trainImageStream.readInt();
-        int trainLabelHeader = trainLabelStream.readInt();
-        int testImageHeader = testImageStream.readInt();
-        int testLabelHeader = testLabelStream.readInt();
-        if(trainImageHeader != 0x803)
-            throw new IOException("Expected magic header \"0x803\" for training images but received " + trainImageHeader);
-        if(trainLabelHeader != 0x801)
-            throw new IOException("Expected magic header \"0x801\" for training labels but received " + trainLabelHeader);
-        if(testImageHeader != 0x803)
-            throw new IOException("Expected magic header \"0x803\" for test images but received " + testImageHeader);
-        if(testLabelHeader != 0x801)
-            throw new IOException("Expected magic header \"0x801\" for test labels but received " + testLabelHeader);
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException("File " + path + " is too large to map");
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
     }
 
     /**
-     * Removes and saves the constants saved in the files.
-     * @throws IOException standard exceptions.
+     * Returns the number of pixels in one image.
      */
 
-    private void getConstants() throws IOException {
-        numOfTrainImages = trainImageStream.readInt();
-        numOfTrainLabels = trainLabelStream.readInt();
-        numOfTestImages = testImageStream.readInt();
-        numOfTestLabels = testLabelStream.readInt();
-        numOfCols = trainImageStream.readInt();
-        numOfRows = trainImageStream.readInt();
-        //This is just to remove the number of rows and columns from the testImageStream as they are not needed.
-        testImageStream.readInt();
-        testImageStream.readInt();
+    int getImageSize() {
+        return numOfRows * numOfCols;
+    }
+
+    /**
+     * Returns a read only view of the pixels of all training images without copying them. Image i starts at index
+     * i * getImageSize() and every pixel is an unsigned byte.
+     */
+
+    ByteBuffer getTrainingImageBuffer() {
+        return trainImages.duplicate();
+    }
+
+    /**
+     * Returns a read only view of the pixels of all test images without copying them, see getTrainingImageBuffer().
+     */
+
+    ByteBuffer getTestImageBuffer() {
+        return testImages.duplicate();
     }
 
     /**
      * Returns a byte array of all the training imgaes.
-     * @throws IOException standard exceptions.
      */
 
-    byte[][] getTrainingImages() throws IOException {
-        byte[][] result = new byte[numOfTrainImages][numOfRows * numOfCols];
-        for(int i = 0; i < numOfTrainImages; i++) {
-            trainImageStream.read(result[i]);
-        }
-        return result;
+    byte[][] getTrainingImages() {
+        return copyImages(trainImages, numOfTrainImages);
     }
 
     /**
      * Returns a byte array with training labels that match the images.
-     * @throws IOException standard exceptions.
      */
 
-    byte[] getTrainingLabels() throws IOException {
-        byte[] result = new byte[numOfTrainLabels];
-        trainLabelStream.read(result);
-        return result;
+    byte[] getTrainingLabels() {
+        return copyLabels(trainLabels);
     }
 
     /**
      * Returns a byte array with the test images.
-     * @throws IOException standard exceptions.
      */
 
-    byte[][] getTestImages() throws IOException {
-        byte[][] result = new byte[numOfTestImages][numOfRows * numOfCols];
-        for(int i = 0; i < numOfTestImages; i++) {
-            testImageStream.read(result[i]);
+    byte[][] getTestImages() {
+        return copyImages(testImages, numOfTestImages);
+    }
+
+    /**
+     * Returns a byte array with the labels for the test images.
+     */
+
+    byte[] getTestLabels() {
+        return copyLabels(testLabels);
+    }
+
+    /**
+     * Copies the mapped images into one array per image.
+     */
+
+    private byte[][] copyImages(ByteBuffer images, int numOfImages) {
+        int size = getImageSize();
+        byte[][] result = new byte[numOfImages][size];
+        for(int i = 0; i < numOfImages; i++) {
+            images.get(i * size, result[i]);
         }
         return result;
     }
 
     /**
-     * Returns a byte array with the labels for the test images.
-     * @throws IOException standard exceptions.
+     * Copies the mapped labels into an array.
      */
 
-    byte[] getTestLabels() throws IOException {
-        byte[] result = new byte[numOfTestLabels];
-        testLabelStream.read(result);
+    private static byte[] copyLabels(ByteBuffer labels) {
+        byte[] result = new byte[labels.capacity()];
+        labels.get(0, result);
         return result;
     }
 }
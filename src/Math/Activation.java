@@ -0,0 +1,247 @@
+package Math;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public enum Activation {
+
+    /**
+     * 1 / (1 + e^-x), the activation the network has always used. Evaluated as chosen with -Dsigmoid, see Sigmoid.
+     */
+
+    SIGMOID(0, "sigmoid") {
+        @Override
+        public void apply(double[] x, int xOffset, double[] result, int resultOffset, int length) {
+            SELECTED_SIGMOID.apply(x, xOffset, result, resultOffset, length);
+        }
+
+        @Override
+        public void multiplyDerivative(double[] activation, int activationOffset, double[] error, int errorOffset, int length) {
+            for(int i = 0; i < length; i++) {
+                error[errorOffset + i] *= Functions.sigmoidPrimeFromActivation(activation[activationOffset + i]);
+            }
+        }
+
+        @Override
+        public double initialWeightScale(int inputs) {
+            return 1.0;
+        }
+    },
+
+    /**
+     * max(0, x). No exp, and every neuron with a negative weighted input outputs 0.
+     */
+
+    RELU(1, "relu") {
+        @Override
+        public void apply(double[] x, int xOffset, double[] result, int resultOffset, int length) {
+            for(int i = 0; i < length; i++) {
+                result[resultOffset + i] = Math.max(0.0, x[xOffset + i]);
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(double[] activation, int activationOffset, double[] error, int errorOffset, int length) {
+            for(int i = 0; i < length; i++) {
+                error[errorOffset + i] *= activation[activationOffset + i] > 0.0 ? 1.0 : 0.0;
+            }
+        }
+    },
+
+    /**
+     * x for positive x and 0.01 * x otherwise, so a neuron with a negative weighted input still learns.
+     */
+
+    LEAKY_RELU(2, "leakyrelu") {
+        @Override
+        public void apply(double[] x, int xOffset, double[] result, int resultOffset, int length) {
+            for(int i = 0; i < length; i++) {
+                double value = x[xOffset + i];
+                result[resultOffset + i] = value > 0.0 ? value : LEAK * value;
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(double[] activation, int activationOffset, double[] error, int errorOffset, int length) {
+            for(int i = 0; i < length; i++) {
+                error[errorOffset + i] *= activation[activationOffset + i] > 0.0 ? 1.0 : LEAK;
+            }
+        }
+    },
+
+    /**
+     * tanh(x), a sigmoid centered on 0. Evaluated as (1 - e^-2|x|) / (1 + e^-2|x|) with the sign of x, which differs
+     * from Math.tanh by at most 2.3e-16 but uses the exp intrinsic, Math.tanh is about eight times slower.
+     */
+
+    TANH(3, "tanh") {
+        @Override
+        public void apply(double[] x, int xOffset, double[] result, int resultOffset, int length) {
+            for(int i = 0; i < length; i++) {
+                double value = x[xOffset + i];
+                double exp = Math.exp(-2.0 * Math.abs(value));
+                result[resultOffset + i] = Math.copySign((1.0 - exp) / (1.0 + exp), value);
+            }
+        }
+
+        @Override
+        public void multiplyDerivative(double[] activation, int activationOffset, double[] error, int errorOffset, int length) {
+            for(int i = 0; i < length; i++) {
+                double value = activation[activationOffset + i];
+                error[errorOffset + i] *= 1.0 - value * value;
+            }
+        }
+
+        @Override
+        public double initialWeightScale(int inputs) {
+            return Math.sqrt(1.0 / inputs);
+        }
+    },
+
+    /**
+     * e^x_i / sum_j e^x_j over the neurons of a layer, the outputs are positive and sum to 1. Only for the output layer.
+     */
+
+    SOFTMAX(4, "softmax") {
+        /**
+         * The largest input is subtracted first, e^(x_i - max) / sum_j e^(x_j - max) is the same value but cannot
+         * overflow and at least one term of the sum is 1.
+         */
+
+        @Override
+        public void apply(double[] x, int xOffset, double[] result, int resultOffset, int length) {
+            double max = Double.NEGATIVE_INFINITY;
+            for(int i = 0; i < length; i++) {
+                max = Math.max(max, x[xOffset + i]);
+            }
+            double sum = 0.0;
+            for(int i = 0; i < length; i++) {
+                double exp = Math.exp(x[xOffset + i] - max);
+                result[resultOffset + i] = exp;
+                sum += exp;
+            }
+            double scale = 1.0 / sum;
+            for(int i = 0; i < length; i++) {
+                result[resultOffset + i] *= scale;
+            }
+        }
+
+        /**
+         * The Jacobian of softmax is a_i * (delta_ij - a_j), multiplied by the error that is
+         * a_i * (error_i - sum_j error_j * a_j).
+         */
+
+        @Override
+        public void multiplyDerivative(double[] activation, int activationOffset, double[] error, int errorOffset, int length) {
+            double dot = 0.0;
+            for(int i = 0; i < length; i++) {
+                dot += error[errorOffset + i] * activation[activationOffset + i];
+            }
+            for(int i = 0; i < length; i++) {
+                error[errorOffset + i] = activation[activationOffset + i] * (error[errorOffset + i] - dot);
+            }
+        }
+
+        @Override
+        public double initialWeightScale(int inputs) {
+            return Math.sqrt(1.0 / inputs);
+        }
+
+        @Override
+        public boolean isElementwise() {
+            return false;
+        }
+    };
+
+    // Slope of LEAKY_RELU for negative inputs.
+    private static final double LEAK = 0.01;
+
+    private static final Sigmoid SELECTED_SIGMOID = Sigmoid.select();
+
+    // Identifies the activation in saved models, so it must never change, unlike the ordinal.
+    private final int id;
+    private final String label;
+
+    Activation(int id, String label) {
+        this.id = id;
+        this.label = label;
+    }
+
+    /**
+     * Calculates the activation of a layer from the weighted inputs x[xOffset] to x[xOffset + length - 1] into
+     * result[resultOffset] to result[resultOffset + length - 1]. May be done in place.
+     */
+
+    public abstract void apply(double[] x, int xOffset, double[] result, int resultOffset, int length);
+
+    /**
+     * Multiplies the error of a layer in place by the derivative of the activation, taken from the activation of the
+     * layer, which a network has from feeding forward. For an elementwise activation this is
+     * error[errorOffset + i] *= f'(activation[activationOffset + i]) for i in [0, length).
+     */
+
+    public abstract void multiplyDerivative(double[] activation, int activationOffset, double[] error, int errorOffset, int length);
+
+    /**
+     * Returns the standard deviation of the initial weights of a layer with this activation. Scaled by the inputs for
+     * ReLU (He) and tanh and softmax (Xavier) so the weighted inputs start in the range where the activation learns,
+     * the sigmoid keeps the unscaled weights it has always been trained with.
+     * @param inputs The number of inputs to each neuron of the layer.
+     */
+
+    public double initialWeightScale(int inputs) {
+        return Math.sqrt(2.0 / inputs);
+    }
+
+    /**
+     * Returns whether the activation of a neuron only depends on its own weighted input, false for SOFTMAX.
+     */
+
+    public boolean isElementwise() {
+        return true;
+    }
+
+    /**
+     * Returns the number that identifies the activation in a saved model.
+     */
+
+    public int id() {
+        return id;
+    }
+
+    /**
+     * Returns the name of the activation in a layout, e.g. "relu".
+     */
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    /**
+     * Returns the activation with the given name in a layout, case is ignored.
+     * @throws IllegalArgumentException if there is no activation with the name.
+     */
+
+    public static Activation of(String label) {
+        for(Activation activation : values()) {
+            if(activation.label.equalsIgnoreCase(label))
+                return activation;
+        }
+        throw new IllegalArgumentException("Unknown activation " + label + ", expected sigmoid, relu, leakyrelu, tanh or softmax");
+    }
+
+    /**
+     * Returns the activation with the given id.
+     * @throws IllegalArgumentException if there is no activation with the id.
+     */
+
+    public static Activation of(int id) {
+        for(Activation activation : values()) {
+            if(activation.id == id)
+                return activation;
+        }
+        throw new IllegalArgumentException("Unknown activation id " + id);
+    }
+}
@@ -6,6 +6,14 @@ package Math;
 
 public class Functions {
 
+    // The table of tableSigmoid() covers [-TABLE_RANGE, TABLE_RANGE] with TABLE_STEPS entries per unit, 32 KB in all.
+    private static final double TABLE_RANGE = 16.0;
+    private static final int TABLE_STEPS = 128;
+    private static final double[] SIGMOID_TABLE = sigmoidTable();
+
+    // rationalSigmoid() is clamped where its error at the clamp equals its error inside the range.
+    private static final double RATIONAL_CLAMP = 4.79;
+
     /**
      * The sigmoid function.
      */
@@ -19,6 +27,55 @@ public class Functions {
      */
 
     public static double sigmoidPrime(double x) {
-        return sigmoid(x) * (1 - sigmoid(x));
+        double sigmoid = sigmoid(x);
+        return sigmoid * (1 - sigmoid);
+    }
+
+    /**
+     * Derivative of the sigmoid function from its output, sigmoid'(x) = sigmoid(x) * (1 - sigmoid(x)). A network
+     * already has the output of every neuron from feeding forward, so backpropagation needs no exp at all.
+     * @param activation sigmoid(x).
+     */
+
+    public static double sigmoidPrimeFromActivation(double activation) {
+        return activation * (1 - activation);
+    }
+
+    /**
+     * The sigmoid function looked up in a table and interpolated linearly, x is clamped to [-16, 16]. Differs from
+     * sigmoid() by at most 7.4e-7.
+     */
+
+    public static double tableSigmoid(double x) {
+        double position = (Math.min(Math.max(x, -TABLE_RANGE), TABLE_RANGE) + TABLE_RANGE) * TABLE_STEPS;
+        int index = (int) position;
+        double fraction = position - index;
+        return SIGMOID_TABLE[index] + fraction * (SIGMOID_TABLE[index + 1] - SIGMOID_TABLE[index]);
+    }
+
+    /**
+     * The sigmoid function as 0.5 + 0.5 * tanh(x / 2) with the [7/6] Pade approximant of tanh, clamped to |x| <= 9.58.
+     * Differs from sigmoid() by at most 3.6e-5. It is only multiplications, additions and a division, so the JIT
+     * vectorizes a loop of it, unlike a loop of Math.exp.
+     */
+
+    public static double rationalSigmoid(double x) {
+        double t = Math.min(Math.max(0.5 * x, -RATIONAL_CLAMP), RATIONAL_CLAMP);
+        double t2 = t * t;
+        double numerator = t * (135135.0 + t2 * (17325.0 + t2 * (378.0 + t2)));
+        double denominator = 135135.0 + t2 * (62370.0 + t2 * (3150.0 + t2 * 28.0));
+        return 0.5 + 0.5 * (numerator / denominator);
+    }
+
+    /**
+     * The table of tableSigmoid(), with one entry past the range so the last interval can be interpolated.
+     */
+
+    private static double[] sigmoidTable() {
+        double[] table = new double[(int) (2 * TABLE_RANGE * TABLE_STEPS) + 2];
+        for(int i = 0; i < table.length; i++) {
+            table[i] = sigmoid((double) i / TABLE_STEPS - TABLE_RANGE);
+        }
+        return table;
     }
 }
@@ -0,0 +1,127 @@
+package Math;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public enum Loss {
+
+    /**
+     * 1/2 * sum_j (a_j - y_j)^2, the loss the network has always been trained with. Its output error is multiplied by
+     * the derivative of the output activation, which is close to 0 for a saturated sigmoid neuron, so a neuron that is
+     * confidently wrong learns slowly.
+     */
+
+    QUADRATIC("quadratic") {
+        @Override
+        public double loss(double[] output, int offset, int length, int label) {
+            double sum = 0.0;
+            for(int j = 0; j < length; j++) {
+                double difference = output[offset + j] - (j == label ? 1.0 : 0.0);
+                sum += difference * difference;
+            }
+            return 0.5 * sum;
+        }
+
+        @Override
+        public void outputError(Activation activation, double[] output, int outputOffset, int length, int label, double[] error, int errorOffset) {
+            super.outputError(activation, output, outputOffset, length, label, error, errorOffset);
+            activation.multiplyDerivative(output, outputOffset, error, errorOffset, length);
+        }
+
+        @Override
+        public boolean matches(Activation activation) {
+            return true;
+        }
+    },
+
+    /**
+     * -sum_j (y_j * ln(a_j) + (1 - y_j) * ln(1 - a_j)), for a sigmoid output layer. The derivative of the sigmoid
+     * cancels out of the output error, which is a - y, so the further a neuron is off the faster it learns.
+     */
+
+    CROSS_ENTROPY("crossentropy") {
+        @Override
+        public double loss(double[] output, int offset, int length, int label) {
+            double sum = 0.0;
+            for(int j = 0; j < length; j++) {
+                sum -= log(j == label ? output[offset + j] : 1.0 - output[offset + j]);
+            }
+            return sum;
+        }
+
+        @Override
+        public boolean matches(Activation activation) {
+            return activation == Activation.SIGMOID;
+        }
+    },
+
+    /**
+     * -ln(a_label), the log-likelihood of the correct digit, for a softmax output layer. The Jacobian of the softmax
+     * cancels out of the output error, which is a - y.
+     */
+
+    LOG_LIKELIHOOD("loglikelihood") {
+        @Override
+        public double loss(double[] output, int offset, int length, int label) {
+            return -log(output[offset + label]);
+        }
+
+        @Override
+        public boolean matches(Activation activation) {
+            return activation == Activation.SOFTMAX;
+        }
+    };
+
+    private final String label;
+
+    Loss(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the loss of one image.
+     * @param output The output layer of the network for the image, from output[offset] to output[offset + length - 1].
+     * @param label The correct digit, the output should be 1 there and 0 everywhere else.
+     */
+
+    public abstract double loss(double[] output, int offset, int length, int label);
+
+    /**
+     * Calculates the error of the output layer for one image, the derivative of the loss by the weighted input of
+     * every output neuron. This is a - y, unless the activation has to be differentiated as well.
+     * @param activation The activation of the output layer.
+     * @param output The output layer of the network for the image.
+     * @param label The correct digit.
+     * @param error The array to write the error to, from error[errorOffset] to error[errorOffset + length - 1].
+     */
+
+    public void outputError(Activation activation, double[] output, int outputOffset, int length, int label, double[] error, int errorOffset) {
+        for(int j = 0; j < length; j++) {
+            error[errorOffset + j] = output[outputOffset + j] - (j == label ? 1.0 : 0.0);
+        }
+    }
+
+    /**
+     * Returns whether this loss can be used with the given activation of the output layer.
+     */
+
+    public abstract boolean matches(Activation activation);
+
+    /**
+     * Returns the name of the loss, e.g. "crossentropy".
+     */
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    /**
+     * The natural logarithm, with x clamped so an output rounded to 0 gives a large loss instead of infinity.
+     */
+
+    private static double log(double x) {
+        return Math.log(Math.max(x, Double.MIN_NORMAL));
+    }
+}
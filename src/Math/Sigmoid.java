@@ -0,0 +1,96 @@
+package Math;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public enum Sigmoid {
+
+    /**
+     * Functions.sigmoid(), exact up to the rounding of Math.exp.
+     */
+
+    EXACT(0.0) {
+        @Override
+        public double apply(double x) {
+            return Functions.sigmoid(x);
+        }
+    },
+
+    /**
+     * Functions.tableSigmoid(), a lookup in a 32 KB table.
+     */
+
+    TABLE(7.4e-7) {
+        @Override
+        public double apply(double x) {
+            return Functions.tableSigmoid(x);
+        }
+    },
+
+    /**
+     * Functions.rationalSigmoid(), a rational function the JIT vectorizes in apply(double[], ...).
+     */
+
+    RATIONAL(3.6e-5) {
+        @Override
+        public double apply(double x) {
+            return Functions.rationalSigmoid(x);
+        }
+    };
+
+    private final double maxError;
+
+    Sigmoid(double maxError) {
+        this.maxError = maxError;
+    }
+
+    /**
+     * Returns the sigmoid of x.
+     */
+
+    public abstract double apply(double x);
+
+    /**
+     * result[resultOffset + i] = apply(x[xOffset + i]) for i in [0, length). May be done in place.
+     */
+
+    public void apply(double[] x, int xOffset, double[] result, int resultOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            result[resultOffset + i] = apply(x[xOffset + i]);
+        }
+    }
+
+    /**
+     * Single precision apply(double[], ...), evaluated in double precision and rounded to float.
+     */
+
+    public void apply(float[] x, int xOffset, float[] result, int resultOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            result[resultOffset + i] = (float) apply(x[xOffset + i]);
+        }
+    }
+
+    /**
+     * Returns the largest difference from the exact sigmoid over all x.
+     */
+
+    public double maxError() {
+        return maxError;
+    }
+
+    /**
+     * Returns the sigmoid given by the system property "sigmoid", which is exact (default), table or rational. Meant
+     * to be stored in a static final field, so the JIT inlines the chosen one.
+     * @throws IllegalArgumentException if the property has any other value.
+     */
+
+    public static Sigmoid select() {
+        String name = System.getProperty("sigmoid", "exact");
+        for(Sigmoid sigmoid : values()) {
+            if(sigmoid.name().equalsIgnoreCase(name))
+                return sigmoid;
+        }
+        throw new IllegalArgumentException("Unknown sigmoid " + name + ", expected exact, table or rational");
+    }
+}
@@ -1,272 +1,574 @@
+import java.util.Arrays;
+
 /**
  * @author Kenny Brink - kebri18@student.sdu.dk
  */
 
 public class Matrix {
 
+    // Tile sizes for the blocked kernels. A BLOCK_K x BLOCK_J tile of matrix2 is 128 KB, which stays in L2 while
+    // BLOCK_I rows of the result are accumulated against it.
+    private static final int BLOCK_I = 64, BLOCK_K = 128, BLOCK_J = 128;
+
+    // The inner loops of the matrix operations, done with the Vector API when it is available.
+    private static final MatrixKernels KERNELS = MatrixKernels.select();
+
     /**
-     * Matrix matrix multiplication. Returns matrix1 * matrix2.
-     * @param <T>
+     * Matrix matrix multiplication into the given result. Sets result = matrix1 * matrix2, or result += matrix1 * matrix2
+     * if accumulate is true. The result must not share storage with one of the operands.
+     * The loops are ordered i-k-j and tiled so that the rows of matrix2 and result are walked contiguously, and four
+     * values of k are done per pass over a row so each result element is loaded and stored a quarter as often.
+     * @param result
      * @param matrix1
      * @param matrix2
-     * @return
+     * @param accumulate
      */
 
-    public static double[][] multiplication(double[][] matrix1, double[][] matrix2) {
-        int rows1 = matrix1.length;
-        int cols1 = matrix1[0].length;
-        int rows2 = matrix2.length;
-        int cols2 = matrix2[0].length;
+    public static void multiplicationInto(DenseMatrix result, DenseMatrix matrix1, DenseMatrix matrix2, boolean accumulate) {
+        int rows1 = matrix1.rows();
+        int cols1 = matrix1.cols();
+        int rows2 = matrix2.rows();
+        int cols2 = matrix2.cols();
         if(cols1 != rows2)
             throw new IllegalArgumentException("Illegal matrix dimensions");
-        double[][] result = new double[rows1][cols2];
-        for(int i = 0; i < rows1; i++) {
-            for(int j = 0; j < cols2; j++) {
-                result[i][j] = 0.0;
-                for(int k = 0; k < cols1; k++) {
-                    result[i][j] = result[i][j] + matrix1[i][k] * matrix2[k][j];
+        if(result.rows() != rows1 || result.cols() != cols2)
+            throw new IllegalArgumentException("Illegal result dimensions");
+        if(!accumulate)
+            result.fill(0.0);
+        for(int i0 = 0; i0 < rows1; i0 += BLOCK_I) {
+            int iEnd = Math.min(i0 + BLOCK_I, rows1);
+            for(int k0 = 0; k0 < cols1; k0 += BLOCK_K) {
+                int kEnd = Math.min(k0 + BLOCK_K, cols1);
+                for(int j0 = 0; j0 < cols2; j0 += BLOCK_J) {
+                    int jEnd = Math.min(j0 + BLOCK_J, cols2);
+                    for(int i = i0; i < iEnd; i++) {
+                        multiplyRow(result, i, matrix1, matrix2, k0, kEnd, j0, jEnd);
+                    }
                 }
             }
         }
-        return result;
     }
 
     /**
-     * Matrix vector multiplication. Returns matrix * vector.
-     * @param <T>
+     * Adds row i of matrix1 [k0..kEnd) times the rows k0..kEnd of matrix2 to row i of result [j0..jEnd).
+     */
+
+    private static void multiplyRow(DenseMatrix result, int i, DenseMatrix matrix1, DenseMatrix matrix2, int k0, int kEnd, int j0, int jEnd) {
+        double[] c = result.data(), a = matrix1.data(), b = matrix2.data();
+        int cRow = result.index(i, 0), aRow = matrix1.index(i, 0), stride = matrix2.stride();
+        int length = jEnd - j0;
+        int k = k0;
+        for(; k + 3 < kEnd; k += 4) {
+            int b0 = matrix2.index(k, j0);
+            KERNELS.axpy4(a[aRow + k], a[aRow + k + 1], a[aRow + k + 2], a[aRow + k + 3], b, b0, b0 + stride, b0 + 2 * stride, b0 + 3 * stride, c, cRow + j0, length);
+        }
+        for(; k < kEnd; k++) {
+            KERNELS.axpy(a[aRow + k], b, matrix2.index(k, j0), c, cRow + j0, length);
+        }
+    }
+
+    /**
+     * Matrix vector multiplication into the given result. Sets result = matrix * vector, or result += matrix * vector
+     * if accumulate is true. Every element is a dot product of a row of the matrix and the vector.
+     * @param result
      * @param matrix
      * @param vector
-     * @return
+     * @param accumulate
      */
 
-    public static double[] multiplication(double[][] matrix, double[] vector) {
-        int rows = matrix.length;
-        int cols = matrix[0].length;
+    public static void multiplicationInto(double[] result, DenseMatrix matrix, double[] vector, boolean accumulate) {
+        int rows = matrix.rows();
+        int cols = matrix.cols();
         if(vector.length != cols)
             throw new IllegalArgumentException("Illegal matrix dimensions.");
-        double[] result = new double[rows];
-        for (int i = 0; i < rows; i++) {
-            result[i] = 0.0;
-            for (int j = 0; j < cols; j++) {
-                result[i] = result[i] + matrix[i][j] * vector[j];
+        if(result.length != rows)
+            throw new IllegalArgumentException("Illegal result dimensions.");
+        double[] a = matrix.data();
+        for(int i = 0; i < rows; i++) {
+            double sum = KERNELS.dot(a, matrix.index(i, 0), vector, 0, cols);
+            result[i] = accumulate ? result[i] + sum : sum;
+        }
+    }
+
+    /**
+     * Matrix matrix multiplication with the second matrix transposed into the given result. Sets
+     * result = matrix1 * matrix2^T, or result += matrix1 * matrix2^T if accumulate is true. matrix2^T is never built,
+     * every element is a dot product of a row of matrix1 and a row of matrix2 which are both contiguous. The dot products
+     * are done for two rows of matrix1 and four rows of matrix2 at a time, so every row loaded is used more than once and
+     * a batch of rows costs less per row than a single row.
+     * @param result
+     * @param matrix1
+     * @param matrix2
+     * @param accumulate
+     */
+
+    public static void multiplicationTransposedInto(DenseMatrix result, DenseMatrix matrix1, DenseMatrix matrix2, boolean accumulate) {
+        int rows1 = matrix1.rows();
+        int cols1 = matrix1.cols();
+        int rows2 = matrix2.rows();
+        int cols2 = matrix2.cols();
+        if(cols1 != cols2)
+            throw new IllegalArgumentException("Illegal matrix dimensions");
+        if(result.rows() != rows1 || result.cols() != rows2)
+            throw new IllegalArgumentException("Illegal result dimensions");
+        double[] a = matrix1.data(), b = matrix2.data(), c = result.data();
+        if(!accumulate) {
+            for(int i = 0; i < rows1; i++) {
+                Arrays.fill(c, result.index(i, 0), result.index(i, 0) + rows2, 0.0);
+            }
+        }
+        int i = 0;
+        for(; i + 1 < rows1; i += 2) {
+            int a0 = matrix1.index(i, 0), a1 = matrix1.index(i + 1, 0);
+            int c0 = result.index(i, 0), c1 = result.index(i + 1, 0);
+            int j = 0;
+            for(; j + 3 < rows2; j += 4) {
+                KERNELS.dot2x4(a, a0, a1, b, matrix2.index(j, 0), matrix2.index(j + 1, 0), matrix2.index(j + 2, 0),
+                               matrix2.index(j + 3, 0), cols1, c, c0 + j, c1 + j);
+            }
+            for(; j < rows2; j++) {
+                c[c0 + j] += KERNELS.dot(a, a0, b, matrix2.index(j, 0), cols1);
+                c[c1 + j] += KERNELS.dot(a, a1, b, matrix2.index(j, 0), cols1);
+            }
+        }
+        for(; i < rows1; i++) {
+            int aRow = matrix1.index(i, 0), cRow = result.index(i, 0);
+            int j = 0;
+            for(; j + 3 < rows2; j += 4) {
+                KERNELS.dot4(a, aRow, b, matrix2.index(j, 0), matrix2.index(j + 1, 0), matrix2.index(j + 2, 0),
+                             matrix2.index(j + 3, 0), cols1, c, cRow + j);
+            }
+            for(; j < rows2; j++) {
+                c[cRow + j] += KERNELS.dot(a, aRow, b, matrix2.index(j, 0), cols1);
             }
         }
-        return result;
     }
 
     /**
-     * Matrix vector multiplication. Returns vector * matrix.
-     * @param <T>
-     * @param vector
+     * Matrix matrix multiplication with the first matrix transposed into the given result. Sets
+     * result = matrix1^T * matrix2, or result += matrix1^T * matrix2 if accumulate is true. matrix1^T is never built,
+     * the product is the sum of the rank-1 updates column(matrix1^T, k) * row(matrix2, k), done four values of k at a
+     * time so each result row is loaded and stored a quarter as often.
+     * @param result
+     * @param matrix1
+     * @param matrix2
+     * @param accumulate
+     */
+
+    public static void transposedMultiplicationInto(DenseMatrix result, DenseMatrix matrix1, DenseMatrix matrix2, boolean accumulate) {
+        int rows1 = matrix1.rows();
+        int cols1 = matrix1.cols();
+        int rows2 = matrix2.rows();
+        int cols2 = matrix2.cols();
+        if(rows1 != rows2)
+            throw new IllegalArgumentException("Illegal matrix dimensions");
+        if(result.rows() != cols1 || result.cols() != cols2)
+            throw new IllegalArgumentException("Illegal result dimensions");
+        if(!accumulate)
+            result.fill(0.0);
+        double[] a = matrix1.data(), b = matrix2.data(), c = result.data();
+        int aStride = matrix1.stride(), bStride = matrix2.stride();
+        int k = 0;
+        for(; k + 3 < rows1; k += 4) {
+            int a0 = matrix1.index(k, 0), a1 = a0 + aStride, a2 = a1 + aStride, a3 = a2 + aStride;
+            int b0 = matrix2.index(k, 0), b1 = b0 + bStride, b2 = b1 + bStride, b3 = b2 + bStride;
+            for(int i = 0; i < cols1; i++) {
+                KERNELS.axpy4(a[a0 + i], a[a1 + i], a[a2 + i], a[a3 + i], b, b0, b1, b2, b3, c, result.index(i, 0), cols2);
+            }
+        }
+        for(; k < rows1; k++) {
+            int a0 = matrix1.index(k, 0), b0 = matrix2.index(k, 0);
+            for(int i = 0; i < cols1; i++) {
+                KERNELS.axpy(a[a0 + i], b, b0, c, result.index(i, 0), cols2);
+            }
+        }
+    }
+
+    /**
+     * Transposed matrix vector multiplication into the given result. Sets result = matrix^T * vector, or
+     * result += matrix^T * vector if accumulate is true. matrix^T is never built, the rows of the matrix are scaled by
+     * the vector and added to the result.
+     * @param result
      * @param matrix
-     * @return
+     * @param vector
+     * @param accumulate
      */
 
-    public static double[][] multiplication(double[] vector, double[][] matrix) {
-        int cols = vector.length;
-        int rows = matrix.length;
-        if(matrix[0].length != 1)
+    public static void transposedMultiplicationInto(double[] result, DenseMatrix matrix, double[] vector, boolean accumulate) {
+        int rows = matrix.rows();
+        int cols = matrix.cols();
+        if(vector.length != rows)
             throw new IllegalArgumentException("Illegal matrix dimensions.");
-        double[][] result = new double[cols][rows];
-        for(int i = 0; i < cols; i++) {
-            for(int j = 0; j < rows; j++) {
-                result[i][j] = matrix[j][0] * vector[i];
-            }
+        if(result.length != cols)
+            throw new IllegalArgumentException("Illegal result dimensions.");
+        if(!accumulate)
+            Arrays.fill(result, 0.0);
+        double[] a = matrix.data();
+        for(int i = 0; i < rows; i++) {
+            KERNELS.axpy(vector[i], a, matrix.index(i, 0), result, 0, cols);
         }
-        return result;
     }
 
     /**
-     * Dot product of 2 vectors. Returns vector1.vector2.
-     * @param <T>
+     * Rank-1 update in place. Sets result = result + constant * vector1 * vector2^T without building the outer product.
+     * @param result
+     * @param constant
      * @param vector1
      * @param vector2
-     * @return
      */
 
-    public static double multiplication(double[] vector1, double[] vector2) {
-        if(vector1.length != vector2.length)
-            throw new IllegalArgumentException("Illegal vector dimensions.");
-        double result = 0.0;
-        for (int i = 0; i < vector1.length; i++) {
-            result = result + vector1[i] * vector2[i];
+    public static void rankOneUpdateInto(DenseMatrix result, double constant, double[] vector1, double[] vector2) {
+        int rows = vector1.length;
+        int cols = vector2.length;
+        if(result.rows() != rows || result.cols() != cols)
+            throw new IllegalArgumentException("Illegal result dimensions.");
+        double[] c = result.data();
+        for(int i = 0; i < rows; i++) {
+            double v = constant * vector1[i];
+            if(v != 0.0)
+                KERNELS.axpy(v, vector2, 0, c, result.index(i, 0), cols);
         }
-        return result;
     }
 
     /**
-     * Constant Multiplication on matrix. Returns matrix * constant.
-     * @param <T>
-     * @param matrix
+     * Sparse rank-1 update in place. Sets result = result + constant * vector1 * vector2^T, but only for the columns
+     * listed in the first count entries of indices. When the other entries of vector2 are zero this is the full update
+     * while only touching the columns that change.
+     * @param result
      * @param constant
-     * @return
+     * @param vector1
+     * @param vector2
+     * @param indices
+     * @param count
      */
 
-    public static double[][] constantMultiplication(double[][] matrix, double constant) {
-        double[][] result = new double[matrix.length][matrix[0].length];
-        for(int i = 0; i < result.length; i++) {
-            for(int j = 0; j < result[i].length; j++) {
-                result[i][j] = matrix[i][j] * constant;
+    public static void rankOneUpdateInto(DenseMatrix result, double constant, double[] vector1, double[] vector2, int[] indices, int count) {
+        int rows = vector1.length;
+        if(result.rows() != rows || result.cols() != vector2.length)
+            throw new IllegalArgumentException("Illegal result dimensions.");
+        double[] c = result.data();
+        for(int i = 0; i < rows; i++) {
+            double v = constant * vector1[i];
+            if(v == 0.0)
+                continue;
+            int cRow = result.index(i, 0);
+            for(int k = 0; k < count; k++) {
+                int j = indices[k];
+                c[cRow + j] += v * vector2[j];
             }
         }
-        return result;
     }
 
     /**
-     * Constant Multiplication on vector. Returns vector * constant.
-     * @param <T>
+     * Matrix vector addition into the given result. Sets result = matrix + vector where the vector is added to every row.
+     * The result may be the matrix itself.
+     * @param result
+     * @param matrix
      * @param vector
+     */
+
+    public static void addInto(DenseMatrix result, DenseMatrix matrix, double[] vector) {
+        int rows = matrix.rows();
+        int cols = vector.length;
+        if(matrix.cols() != cols || result.rows() != rows || result.cols() != cols)
+            throw new IllegalArgumentException("Illegal matrix dimensions. " + matrix.cols() + " != " + cols);
+        double[] a = matrix.data(), c = result.data();
+        for(int i = 0; i < rows; i++) {
+            int aRow = matrix.index(i, 0), cRow = result.index(i, 0);
+            KERNELS.add(a, aRow, vector, 0, c, cRow, cols);
+        }
+    }
+
+    /**
+     * Scaled matrix addition in place. Sets result = result + matrix * constant.
+     * @param result
+     * @param matrix
      * @param constant
-     * @return
      */
 
-    public static double[] constantMultiplication(double[] vector, double constant) {
-        double[] result = new double[vector.length];
-        for(int i = 0; i < result.length; i++) {
-            result[i] = vector[i] * constant;
+    public static void scaledAdditionInto(DenseMatrix result, DenseMatrix matrix, double constant) {
+        int rows = matrix.rows();
+        int cols = matrix.cols();
+        if(result.rows() != rows || result.cols() != cols)
+            throw new IllegalArgumentException("Illegal matrix dimensions.");
+        double[] a = matrix.data(), c = result.data();
+        for(int i = 0; i < rows; i++) {
+            int aRow = matrix.index(i, 0), cRow = result.index(i, 0);
+            KERNELS.axpy(constant, a, aRow, c, cRow, cols);
         }
-        return result;
     }
 
     /**
-     * Tranposes a matrix. Returns matrix^T.
-     * @param <T>
+     * Scaled vector addition in place. Sets result = result + vector * constant.
+     * @param result
+     * @param vector
+     * @param constant
+     */
+
+    public static void scaledAdditionInto(double[] result, double[] vector, double constant) {
+        if(result.length != vector.length)
+            throw new IllegalArgumentException("Illegal vector dimensions. " + result.length + " != " + vector.length);
+        KERNELS.axpy(constant, vector, 0, result, 0, result.length);
+    }
+
+    /**
+     * Sums each column of a matrix into the given result. Sets result[j] = sum of column j, or adds the sum to
+     * result[j] if accumulate is true.
+     * @param result
      * @param matrix
-     * @return
+     * @param accumulate
      */
 
-    public static double[][] transpose(double[][] matrix) {
-        int rows = matrix.length;
-        int cols = matrix[0].length;
-        double[][] result = new double[cols][rows];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[j][i] = matrix[i][j];
+    public static void columnSumInto(double[] result, DenseMatrix matrix, boolean accumulate) {
+        int rows = matrix.rows();
+        int cols = matrix.cols();
+        if(result.length != cols)
+            throw new IllegalArgumentException("Illegal result dimensions. " + result.length + " != " + cols);
+        if(!accumulate)
+            Arrays.fill(result, 0.0);
+        double[] a = matrix.data();
+        for(int i = 0; i < rows; i++) {
+            int aRow = matrix.index(i, 0);
+            for(int j = 0; j < cols; j++) {
+                result[j] = result[j] + a[aRow + j];
             }
         }
-        return result;
     }
 
     /**
-     * Transposes a vector. Returns vector^T.
-     * @param <T>
-     * @param vector
-     * @return
+     * Hadamard product into the given result. Sets result = matrix1 o matrix2, the result may be one of the operands.
+     * @param result
+     * @param matrix1
+     * @param matrix2
      */
 
-    public static double[][] transpose(double[] vector) {
-        int rows = 1;
-        int cols = vector.length;
-        double[][] result = new double[cols][rows];
-        for(int i = 0; i < cols; i++) {
-            result[i][0] = vector[i];
+    public static void hadamardProductInto(DenseMatrix result, DenseMatrix matrix1, DenseMatrix matrix2) {
+        int rows1 = matrix1.rows();
+        int cols1 = matrix1.cols();
+        int rows2 = matrix2.rows();
+        int cols2 = matrix2.cols();
+        if(rows1 != rows2 || cols1 != cols2 || result.rows() != rows1 || result.cols() != cols1)
+            throw new IllegalArgumentException("Illegal matrix dimensions.");
+        double[] a = matrix1.data(), b = matrix2.data(), c = result.data();
+        for(int i = 0; i < rows1; i++) {
+            int aRow = matrix1.index(i, 0), bRow = matrix2.index(i, 0), cRow = result.index(i, 0);
+            KERNELS.multiply(a, aRow, b, bRow, c, cRow, cols1);
         }
-        return result;
     }
 
     /**
-     * Matrix matrix addition. Returns matrix1 + matrix2.
-     * @param <T>
+     * Single precision matrix matrix multiplication into the given result. Sets result = matrix1 * matrix2, or
+     * result += matrix1 * matrix2 if accumulate is true. Tiled with the same loop order as the double precision kernel.
+     * @param result
      * @param matrix1
      * @param matrix2
-     * @return
+     * @param accumulate
      */
 
-    public static double[][] add(double[][] matrix1, double[][] matrix2){
-        if(matrix1.length != matrix2.length)
-            throw new IllegalArgumentException("Illegal vector dimensions. " + matrix1.length + " != " + matrix2.length);
-        int rows = matrix1.length;
-        int cols = matrix1[0].length;
-        double[][] result = new double[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = matrix1[i][j] + matrix2[i][j];
+    public static void multiplicationInto(FloatDenseMatrix result, FloatDenseMatrix matrix1, FloatDenseMatrix matrix2, boolean accumulate) {
+        int rows1 = matrix1.rows();
+        int cols1 = matrix1.cols();
+        int cols2 = matrix2.cols();
+        if(cols1 != matrix2.rows())
+            throw new IllegalArgumentException("Illegal matrix dimensions");
+        if(result.rows() != rows1 || result.cols() != cols2)
+            throw new IllegalArgumentException("Illegal result dimensions");
+        if(!accumulate)
+            result.fill(0.0f);
+        for(int i0 = 0; i0 < rows1; i0 += BLOCK_I) {
+            int iEnd = Math.min(i0 + BLOCK_I, rows1);
+            for(int k0 = 0; k0 < cols1; k0 += BLOCK_K) {
+                int kEnd = Math.min(k0 + BLOCK_K, cols1);
+                for(int j0 = 0; j0 < cols2; j0 += BLOCK_J) {
+                    int jEnd = Math.min(j0 + BLOCK_J, cols2);
+                    for(int i = i0; i < iEnd; i++) {
+                        multiplyRow(result, i, matrix1, matrix2, k0, kEnd, j0, jEnd);
+                    }
+                }
             }
         }
-        return result;
     }
 
     /**
-     * Vector vector addition. Returns vector1 + vector2.
-     * @param <T>
-     * @param vector1
-     * @param vector2
-     * @return
+     * Single precision version of multiplyRow.
      */
 
-    public static double[] add(double[] vector1, double[] vector2) {
-        int rows = vector1.length;
-        double[] result = new double[rows];
-        for(int i = 0; i < rows; i++) {
-            result[i] = vector1[i] + vector2[i];
+    private static void multiplyRow(FloatDenseMatrix result, int i, FloatDenseMatrix matrix1, FloatDenseMatrix matrix2, int k0, int kEnd, int j0, int jEnd) {
+        float[] c = result.data(), a = matrix1.data(), b = matrix2.data();
+        int cRow = result.index(i, 0), aRow = matrix1.index(i, 0), stride = matrix2.stride();
+        int length = jEnd - j0;
+        int k = k0;
+        for(; k + 3 < kEnd; k += 4) {
+            int b0 = matrix2.index(k, j0);
+            KERNELS.axpy4(a[aRow + k], a[aRow + k + 1], a[aRow + k + 2], a[aRow + k + 3], b, b0, b0 + stride, b0 + 2 * stride, b0 + 3 * stride, c, cRow + j0, length);
+        }
+        for(; k < kEnd; k++) {
+            KERNELS.axpy(a[aRow + k], b, matrix2.index(k, j0), c, cRow + j0, length);
         }
-        return result;
     }
 
     /**
-     * Matrix matrix subtraction. Returns matrix1 - matrix2.
-     * @param <T>
+     * Single precision version of multiplicationTransposedInto. Sets result = matrix1 * matrix2^T, or
+     * result += matrix1 * matrix2^T if accumulate is true. Register blocked like the double precision kernel, two rows
+     * of matrix1 and four rows of matrix2 at a time, and summed in single precision.
+     * @param result
      * @param matrix1
      * @param matrix2
-     * @return
+     * @param accumulate
      */
 
-    public static double[][] subtract(double[][] matrix1, double[][] matrix2) {
-        int rows = matrix1.length;
-        int cols = matrix1[0].length;
-        double[][] result = new double[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = matrix1[i][j] - matrix2[i][j];
+    public static void multiplicationTransposedInto(FloatDenseMatrix result, FloatDenseMatrix matrix1, FloatDenseMatrix matrix2, boolean accumulate) {
+        int rows1 = matrix1.rows();
+        int cols1 = matrix1.cols();
+        int rows2 = matrix2.rows();
+        if(cols1 != matrix2.cols())
+            throw new IllegalArgumentException("Illegal matrix dimensions");
+        if(result.rows() != rows1 || result.cols() != rows2)
+            throw new IllegalArgumentException("Illegal result dimensions");
+        float[] a = matrix1.data(), b = matrix2.data(), c = result.data();
+        if(!accumulate) {
+            for(int i = 0; i < rows1; i++) {
+                Arrays.fill(c, result.index(i, 0), result.index(i, 0) + rows2, 0.0f);
+            }
+        }
+        int i = 0;
+        for(; i + 1 < rows1; i += 2) {
+            int a0 = matrix1.index(i, 0), a1 = matrix1.index(i + 1, 0);
+            int c0 = result.index(i, 0), c1 = result.index(i + 1, 0);
+            int j = 0;
+            for(; j + 3 < rows2; j += 4) {
+                KERNELS.dot2x4(a, a0, a1, b, matrix2.index(j, 0), matrix2.index(j + 1, 0), matrix2.index(j + 2, 0),
+                               matrix2.index(j + 3, 0), cols1, c, c0 + j, c1 + j);
+            }
+            for(; j < rows2; j++) {
+                c[c0 + j] += KERNELS.dot(a, a0, b, matrix2.index(j, 0), cols1);
+                c[c1 + j] += KERNELS.dot(a, a1, b, matrix2.index(j, 0), cols1);
+            }
+        }
+        for(; i < rows1; i++) {
+            int aRow = matrix1.index(i, 0), cRow = result.index(i, 0);
+            int j = 0;
+            for(; j + 3 < rows2; j += 4) {
+                KERNELS.dot4(a, aRow, b, matrix2.index(j, 0), matrix2.index(j + 1, 0), matrix2.index(j + 2, 0),
+                             matrix2.index(j + 3, 0), cols1, c, cRow + j);
+            }
+            for(; j < rows2; j++) {
+                c[cRow + j] += KERNELS.dot(a, aRow, b, matrix2.index(j, 0), cols1);
             }
         }
-        return result;
     }
 
     /**
-     * Vector vector subtraction. Returns vector1 - vector2.
-     * @param <T>
-     * @param vector1
-     * @param vector2
-     * @return
+     * Single precision version of transposedMultiplicationInto. Sets result = matrix1^T * matrix2, or
+     * result += matrix1^T * matrix2 if accumulate is true.
+     * @param result
+     * @param matrix1
+     * @param matrix2
+     * @param accumulate
      */
 
-    public static double[] subtract(double[] vector1, double[] vector2) {
-        int rows = vector1.length;
-        int cols = 1;
-        double[] result = new double[rows];
-        for(int i = 0; i < rows; i++) {
-            result[i] = vector1[i] - vector2[i];
+    public static void transposedMultiplicationInto(FloatDenseMatrix result, FloatDenseMatrix matrix1, FloatDenseMatrix matrix2, boolean accumulate) {
+        int rows1 = matrix1.rows();
+        int cols1 = matrix1.cols();
+        int cols2 = matrix2.cols();
+        if(rows1 != matrix2.rows())
+            throw new IllegalArgumentException("Illegal matrix dimensions");
+        if(result.rows() != cols1 || result.cols() != cols2)
+            throw new IllegalArgumentException("Illegal result dimensions");
+        if(!accumulate)
+            result.fill(0.0f);
+        float[] a = matrix1.data(), b = matrix2.data(), c = result.data();
+        int aStride = matrix1.stride(), bStride = matrix2.stride();
+        int k = 0;
+        for(; k + 3 < rows1; k += 4) {
+            int a0 = matrix1.index(k, 0), a1 = a0 + aStride, a2 = a1 + aStride, a3 = a2 + aStride;
+            int b0 = matrix2.index(k, 0), b1 = b0 + bStride, b2 = b1 + bStride, b3 = b2 + bStride;
+            for(int i = 0; i < cols1; i++) {
+                KERNELS.axpy4(a[a0 + i], a[a1 + i], a[a2 + i], a[a3 + i], b, b0, b1, b2, b3, c, result.index(i, 0), cols2);
+            }
+        }
+        for(; k < rows1; k++) {
+            int a0 = matrix1.index(k, 0), b0 = matrix2.index(k, 0);
+            for(int i = 0; i < cols1; i++) {
+                KERNELS.axpy(a[a0 + i], b, b0, c, result.index(i, 0), cols2);
+            }
         }
-        return result;
     }
 
+    /**
+     * Single precision matrix vector addition into the given result. Sets result = matrix + vector where the vector is
+     * added to every row. The result may be the matrix itself.
+     * @param result
+     * @param matrix
+     * @param vector
+     */
 
-    public static double[] hadamardProduct(double[] vector1, double[] vector2) {
-        int rows = vector1.length;
-        if(vector1.length != vector2.length)
-            throw new IllegalArgumentException("Illegal vector dimensions. " + vector1.length + " != " + vector2.length);
-        double[] result = new double[rows];
+    public static void addInto(FloatDenseMatrix result, FloatDenseMatrix matrix, float[] vector) {
+        int rows = matrix.rows();
+        int cols = vector.length;
+        if(matrix.cols() != cols || result.rows() != rows || result.cols() != cols)
+            throw new IllegalArgumentException("Illegal matrix dimensions. " + matrix.cols() + " != " + cols);
+        float[] a = matrix.data(), c = result.data();
         for(int i = 0; i < rows; i++) {
-            result[i] = vector1[i] * vector2[i];
+            int aRow = matrix.index(i, 0), cRow = result.index(i, 0);
+            KERNELS.add(a, aRow, vector, 0, c, cRow, cols);
         }
-        return result;
     }
 
-    public static double[][] hadamardProduct(double[][] matrix1, double[][] matrix2) {
-        int rows1 = matrix1.length;
-        int cols1 = matrix1[0].length;
-        int rows2 = matrix2.length;
-        int cols2 = matrix2[0].length;
-        if(rows1 != rows2 && cols1 != cols2)
+    /**
+     * Single precision scaled matrix addition in place. Sets result = result + matrix * constant.
+     * @param result
+     * @param matrix
+     * @param constant
+     */
+
+    public static void scaledAdditionInto(FloatDenseMatrix result, FloatDenseMatrix matrix, float constant) {
+        int rows = matrix.rows();
+        int cols = matrix.cols();
+        if(result.rows() != rows || result.cols() != cols)
             throw new IllegalArgumentException("Illegal matrix dimensions.");
-        double[][] result = new double[rows1][cols1];
-        for(int i = 0; i < rows1; i++) {
-            for(int j = 0; j < cols1; j++) {
-                result[i][j] = matrix1[i][j] * matrix2[i][j];
+        float[] a = matrix.data(), c = result.data();
+        for(int i = 0; i < rows; i++) {
+            int aRow = matrix.index(i, 0), cRow = result.index(i, 0);
+            KERNELS.axpy(constant, a, aRow, c, cRow, cols);
+        }
+    }
+
+    /**
+     * Single precision scaled vector addition in place. Sets result = result + vector * constant.
+     * @param result
+     * @param vector
+     * @param constant
+     */
+
+    public static void scaledAdditionInto(float[] result, float[] vector, float constant) {
+        if(result.length != vector.length)
+            throw new IllegalArgumentException("Illegal vector dimensions. " + result.length + " != " + vector.length);
+        KERNELS.axpy(constant, vector, 0, result, 0, result.length);
+    }
+
+    /**
+     * Sums each column of a single precision matrix into the given result. Sets result[j] = sum of column j, or adds
+     * the sum to result[j] if accumulate is true.
+     * @param result
+     * @param matrix
+     * @param accumulate
+     */
+
+    public static void columnSumInto(float[] result, FloatDenseMatrix matrix, boolean accumulate) {
+        int rows = matrix.rows();
+        int cols = matrix.cols();
+        if(result.length != cols)
+            throw new IllegalArgumentException("Illegal result dimensions. " + result.length + " != " + cols);
+        if(!accumulate)
+            Arrays.fill(result, 0.0f);
+        float[] a = matrix.data();
+        for(int i = 0; i < rows; i++) {
+            int aRow = matrix.index(i, 0);
+            for(int j = 0; j < cols; j++) {
+                result[j] = result[j] + a[aRow + j];
             }
         }
-        return result;
     }
 
     /**
@@ -276,20 +578,20 @@ public class Matrix {
      * @return
      */
 
-    public static String matrixToString(double[][] matrix) {
-        String result = "[";
-        for(int i = 0; i < matrix.length; i++) {
-            result += "[";
-            for(int j = 0; j < matrix[i].length; j++) {
-                result += matrix[i][j];
-                if(j != matrix[i].length - 1)
-                    result += ", ";
+    public static String matrixToString(DenseMatrix matrix) {
+        StringBuilder result = new StringBuilder("[");
+        for(int i = 0; i < matrix.rows(); i++) {
+            result.append("[");
+            for(int j = 0; j < matrix.cols(); j++) {
+                result.append(matrix.get(i, j));
+                if(j != matrix.cols() - 1)
+                    result.append(", ");
             }
-            if(i != matrix.length - 1)
-                result+= "]\n ";
+            if(i != matrix.rows() - 1)
+                result.append("]\n ");
         }
-        result+= "]] ";
-        return result;
+        result.append("]] ");
+        return result.toString();
     }
 
     /**
@@ -0,0 +1,115 @@
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+interface MatrixKernels {
+
+    /**
+     * c[cOffset + i] += a0 * b[b0 + i] + a1 * b[b1 + i] + a2 * b[b2 + i] + a3 * b[b3 + i] for i in [0, length).
+     */
+
+    void axpy4(double a0, double a1, double a2, double a3, double[] b, int b0, int b1, int b2, int b3, double[] c, int cOffset, int length);
+
+    /**
+     * c[cOffset + i] += a * b[bOffset + i] for i in [0, length).
+     */
+
+    void axpy(double a, double[] b, int bOffset, double[] c, int cOffset, int length);
+
+    /**
+     * Returns the sum of a[aOffset + i] * b[bOffset + i] for i in [0, length).
+     */
+
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * c[cOffset + k] += dot(a, aOffset, b, bk, length) for k in [0, 4). Each load of a is used for four products.
+     */
+
+    void dot4(double[] a, int aOffset, double[] b, int b0, int b1, int b2, int b3, int length, double[] c, int cOffset);
+
+    /**
+     * dot4 for two rows of a at once, c0 and c1 are where the four results of a0 and a1 are added. Each load of a is
+     * used for four products and each load of b for two.
+     */
+
+    void dot2x4(double[] a, int a0, int a1, double[] b, int b0, int b1, int b2, int b3, int length, double[] c, int c0, int c1);
+
+    /**
+     * c[cOffset + i] = a[aOffset + i] + b[bOffset + i] for i in [0, length).
+     */
+
+    void add(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length);
+
+    /**
+     * c[cOffset + i] = a[aOffset + i] - b[bOffset + i] for i in [0, length).
+     */
+
+    void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length);
+
+    /**
+     * c[cOffset + i] = a[aOffset + i] * b[bOffset + i] for i in [0, length).
+     */
+
+    void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length);
+
+    /**
+     * c[cOffset + i] = a[aOffset + i] * constant for i in [0, length).
+     */
+
+    void scale(double[] a, int aOffset, double constant, double[] c, int cOffset, int length);
+
+    /**
+     * Single precision axpy4.
+     */
+
+    void axpy4(float a0, float a1, float a2, float a3, float[] b, int b0, int b1, int b2, int b3, float[] c, int cOffset, int length);
+
+    /**
+     * Single precision axpy.
+     */
+
+    void axpy(float a, float[] b, int bOffset, float[] c, int cOffset, int length);
+
+    /**
+     * Single precision dot, summed in single precision.
+     */
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Single precision dot4.
+     */
+
+    void dot4(float[] a, int aOffset, float[] b, int b0, int b1, int b2, int b3, int length, float[] c, int cOffset);
+
+    /**
+     * Single precision dot2x4.
+     */
+
+    void dot2x4(float[] a, int a0, int a1, float[] b, int b0, int b1, int b2, int b3, int length, float[] c, int c0, int c1);
+
+    /**
+     * Single precision add.
+     */
+
+    void add(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int length);
+
+    /**
+     * Returns the kernels to use. The Vector API kernels are used when the jdk.incubator.vector module is present
+     * (run with --add-modules jdk.incubator.vector), unless the system property "matrix.kernels" is "scalar".
+     * Otherwise the plain Java loops are used.
+     */
+
+    static MatrixKernels select() {
+        if("scalar".equals(System.getProperty("matrix.kernels")))
+            return new ScalarKernels();
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (MatrixKernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+            } catch(ReflectiveOperationException | LinkageError ignored) {
+            }
+        }
+        return new ScalarKernels();
+    }
+}
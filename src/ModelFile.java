@@ -0,0 +1,191 @@
+import Math.Activation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class ModelFile {
+
+    // Magic header "HWDN" and the version of the layout below, bump the version when the layout changes.
+    // Version 1 had no activations, its networks are all sigmoid.
+    private static final int MAGIC = 0x4E445748, VERSION = 2, SIGMOID_VERSION = 1;
+
+    // Layout, all little-endian: magic, version, number of layers + 1, the layout, the id of the activation of each
+    // layer after the input (Activation.id()), zero padding up to a multiple of 8 bytes, then for each layer its weights row by row
+    // followed by its biases, and at last a CRC32C of everything before it.
+    private static final int CHECKSUM_SIZE = 4;
+
+    /**
+     * Writes the weights, biases and activations of a network. The file is written next to the target and moved in place, so a
+     * process loading the model never sees a half written file.
+     * @param file The file to write.
+     * @param weights The weights of the network, weights[layer] is numOfNeurons x numOfWeights.
+     * @param bias The biases of the network.
+     * @param activations The activation of each layer of the network.
+     * @throws IOException if the file cannot be written.
+     */
+
+    static void save(Path file, DenseMatrix[] weights, double[][] bias, Activation[] activations) throws IOException {
+        int[] layout = new int[weights.length + 1];
+        layout[0] = weights[0].cols();
+        for(int i = 0; i < weights.length; i++) {
+            layout[i + 1] = weights[i].rows();
+        }
+        long size = size(layout, VERSION);
+        if(size > Integer.MAX_VALUE)
+            throw new IOException("Network of " + size + " bytes is too large to save");
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(layout.length);
+        for(int neurons : layout) {
+            buffer.putInt(neurons);
+        }
+        for(Activation activation : activations) {
+            buffer.putInt(activation.id());
+        }
+        buffer.position(headerSize(layout, VERSION));
+        for(int i = 0; i < weights.length; i++) {
+            for(int j = 0; j < weights[i].rows(); j++) {
+                for(int k = 0; k < weights[i].cols(); k++) {
+                    buffer.putDouble(weights[i].get(j, k));
+                }
+            }
+            for(double value : bias[i]) {
+                buffer.putDouble(value);
+            }
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue());
+        buffer.flip();
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Memory maps a file written by save() and creates a network from it. The header and checksum are checked, after
+     * which the weights and biases are bulk copied from the mapping without any parsing.
+     * @param file The file to load.
+     * @return The network stored in the file.
+     * @throws IOException if the file cannot be read, is not a model, or is damaged.
+     */
+
+    static Network load(Path file) throws IOException {
+        FlightEvents.ModelLoadEvent event = new FlightEvents.ModelLoadEvent();
+        event.begin();
+        MappedByteBuffer mapped;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException("File " + file + " is too large to be a model");
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if(buffer.capacity() < 12 || buffer.getInt(0) != MAGIC)
+            throw new IOException("File " + file + " is not a model");
+        int version = buffer.getInt(4);
+        if(version != VERSION && version != SIGMOID_VERSION)
+            throw new IOException("Expected model version " + VERSION + " in " + file + " but received " + version);
+        int length = buffer.getInt(8);
+        if(length < 2 || 12 + 8L * length > buffer.capacity())
+            throw new IOException("Illegal number of layers in " + file + ": " + (length - 1));
+        int[] layout = new int[length];
+        for(int i = 0; i < length; i++) {
+            layout[i] = buffer.getInt(12 + 4 * i);
+            if(layout[i] <= 0)
+                throw new IOException("Illegal layout in " + file + ": layer " + i + " has " + layout[i] + " neurons");
+        }
+        Activation[] activations = new Activation[length - 1];
+        for(int i = 0; i < activations.length; i++) {
+            if(version == SIGMOID_VERSION) {
+                activations[i] = Activation.SIGMOID;
+                continue;
+            }
+            int id = buffer.getInt(12 + 4 * (length + i));
+            try {
+                activations[i] = Activation.of(id);
+            } catch(IllegalArgumentException e) {
+                throw new IOException("Unknown activation in " + file + ": layer " + (i + 1) + " has activation id " + id
+                                      + ", the model may be from a newer version");
+            }
+        }
+        long size = size(layout, version);
+        if(buffer.capacity() != size)
+            throw new IOException("Expected " + size + " bytes in " + file + " but found " + buffer.capacity());
+        int end = (int) size - CHECKSUM_SIZE;
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.slice(0, end));
+        if((int) checksum.getValue() != buffer.getInt(end))
+            throw new IOException("Checksum of " + file + " does not match, the file is damaged");
+        DenseMatrix[] weights = new DenseMatrix[length - 1];
+        double[][] bias = new double[length - 1][];
+        int position = headerSize(layout, version);
+        for(int i = 0; i < weights.length; i++) {
+            weights[i] = new DenseMatrix(layout[i + 1], layout[i]);
+            bias[i] = new double[layout[i + 1]];
+            position = read(buffer, position, weights[i].data());
+            position = read(buffer, position, bias[i]);
+        }
+        Network network;
+        try {
+            network = new Network(weights, bias, activations);
+        } catch(IllegalArgumentException e) {
+            throw new IOException("Illegal network in " + file + ": " + e.getMessage());
+        }
+        if(event.shouldCommit()) {
+            event.file = file.toString();
+            event.layout = network.layout();
+            event.size = size;
+            event.commit();
+        }
+        return network;
+    }
+
+    /**
+     * Copies doubles from the buffer starting at position into the whole array and returns the position after them.
+     */
+
+    private static int read(ByteBuffer buffer, int position, double[] result) {
+        buffer.slice(position, result.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(result);
+        return position + result.length * Double.BYTES;
+    }
+
+    /**
+     * Returns the size of the header of a model with the given layout, padded so the doubles after it are aligned.
+     */
+
+    private static int headerSize(int[] layout, int version) {
+        int size = 12 + 4 * layout.length + (version == SIGMOID_VERSION ? 0 : 4 * (layout.length - 1));
+        return (size + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+
+    /**
+     * Returns the size of the file of a model with the given layout.
+     */
+
+    private static long size(int[] layout, int version) {
+        long doubles = 0;
+        for(int i = 1; i < layout.length; i++) {
+            doubles += (long) layout[i] * layout[i - 1] + layout[i];
+        }
+        return headerSize(layout, version) + doubles * Double.BYTES + CHECKSUM_SIZE;
+    }
+}
@@ -1,6 +1,14 @@
-import Math.Functions;
+import Math.Activation;
+import Math.Loss;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
 
 /**
  * @author Kenny Brink - kebri18@student.sdu.dk
@@ -8,10 +16,25 @@ import java.util.Random;
 
 public class Network {
 
-    private final double[][][] weights;
-    private double[][][] totalWeightError;
-    private final double[][] bias, activation, weightedInput;
-    private double[][] totalBiasError;
+    private final DenseMatrix[] weights;
+    private final double[][] bias;
+    private final Activation[] activations;
+    private final Random randomizer;
+    private Loss loss = Loss.QUADRATIC;
+    private Workspace[] workspaces;
+    private int workspaceBatchSize;
+    private Workspace testWorkspace;
+    private TrainingTelemetry telemetry;
+
+    // Number of batches prepared ahead of training, one being trained on, one ready and one being filled.
+    private static final int PREFETCH_BUFFERS = 3;
+
+    // Number of images fed forward at a time by predictBatch().
+    private static final int PREDICTION_BATCH_SIZE = 64;
+
+    // Scratch space for predict() and predictBatch(), one per calling thread.
+    private final ThreadLocal<Workspace> singlePredictionWorkspace = ThreadLocal.withInitial(() -> new Workspace(getWeights(), 1, false));
+    private final ThreadLocal<Workspace> predictionWorkspace = ThreadLocal.withInitial(() -> new Workspace(getWeights(), PREDICTION_BATCH_SIZE, false));
 
     /**
      * layout = [inputSize, numOfNeurons, numOfNeuron, ... , outputSize];
@@ -19,28 +42,132 @@ public class Network {
      */
 
     Network(int[] layout) {
-        int layers = layout.length - 1;
-        Random randomizer = new Random();
-        weights = new double[layers][][];
+        this(layout, new Random().nextLong());
+    }
+
+    /**
+     * Creates a network where the initial weights and the order of the images in every epoch of training follow from
+     * the seed, so that runs with the same seed, data and number of threads give the same result.
+     * layout = [inputSize, numOfNeurons, numOfNeuron, ... , outputSize];
+     * seed = the seed of the randomizer.
+     */
+
+    Network(int[] layout, long seed) {
+        this(Layout.sigmoid(layout), seed);
+    }
+
+    /**
+     * Creates a network with the given number of neurons and activation in each layer, e.g.
+     * Layout.parse("784-100:relu-10:softmax").
+     */
+
+    Network(Layout layout) {
+        this(layout, new Random().nextLong());
+    }
+
+    /**
+     * Creates a network with the given number of neurons and activation in each layer, where the initial weights and
+     * the order of the images in every epoch of training follow from the seed.
+     * layout = the neurons and activation of every layer.
+     * seed = the seed of the randomizer.
+     */
+
+    Network(Layout layout, long seed) {
+        int[] neurons = layout.neurons();
+        randomizer = new Random(seed);
+        activations = layout.activations();
+        int layers = neurons.length - 1;
+        weights = new DenseMatrix[layers];
         bias = new double[layers][];
         for (int i = 0; i < layers; i++) {
-            weights[i] = initWeights(layout[i], layout[i + 1], randomizer);
-            bias[i] = initBias(layout[i + 1], randomizer);
+            weights[i] = initWeights(neurons[i], neurons[i + 1], activations[i].initialWeightScale(neurons[i]), randomizer);
+            bias[i] = initBias(neurons[i + 1], randomizer);
         }
-        activation = new double[layers][];
-        weightedInput = new double[layers][];
-        initError();
     }
 
     /**
-     * Initializes the weights of this network.
+     * Creates a network with the given weights and biases, which are used as they are and not copied.
+     * weights = the weights of every layer, weights[layer] is numOfNeurons x numOfWeights.
+     * bias = the biases of every layer, bias[layer] has one entry per neuron.
      */
 
-    private double[][] initWeights(int numOfWeights, int numOfNeurons, Random randomizer) {
-        double[][] result = new double[numOfNeurons][numOfWeights];
-        for(int i = 0; i < result.length; i++) {
-            for(int j = 0; j < result[i].length; j++) {
-                result[i][j] = randomizer.nextGaussian();
+    Network(DenseMatrix[] weights, double[][] bias) {
+        this(weights, bias, sigmoids(weights.length));
+    }
+
+    /**
+     * Creates a network with the given weights, biases and activation of each layer. The weights and biases are used
+     * as they are and not copied.
+     * activations = the activation of every layer, only the last may be softmax.
+     */
+
+    Network(DenseMatrix[] weights, double[][] bias, Activation[] activations) {
+        if(weights.length == 0 || weights.length != bias.length)
+            throw new IllegalArgumentException("Illegal number of layers. " + weights.length + " != " + bias.length);
+        for(int i = 0; i < weights.length; i++) {
+            if(bias[i].length != weights[i].rows() || (i > 0 && weights[i].cols() != weights[i - 1].rows()))
+                throw new IllegalArgumentException("Illegal dimensions in layer " + i);
+        }
+        this.activations = new Layout(neurons(weights), activations).activations();
+        this.randomizer = new Random();
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    /**
+     * Returns the sigmoid for every layer of a network with the given number of layers.
+     */
+
+    private static Activation[] sigmoids(int layers) {
+        Activation[] result = new Activation[layers];
+        Arrays.fill(result, Activation.SIGMOID);
+        return result;
+    }
+
+    /**
+     * Returns the number of neurons in each layer of a network with the given weights, the input first.
+     */
+
+    private static int[] neurons(DenseMatrix[] weights) {
+        int[] result = new int[weights.length + 1];
+        result[0] = weights[0].cols();
+        for(int i = 0; i < weights.length; i++) {
+            result[i + 1] = weights[i].rows();
+        }
+        return result;
+    }
+
+    /**
+     * Saves the weights and biases of this network to the given file in a versioned binary format with a checksum.
+     * @param file The file to write, it is replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+
+    public void save(Path file) throws IOException {
+        ModelFile.save(file, weights, bias, activations);
+    }
+
+    /**
+     * Loads a network saved with save(). The file is memory mapped and its weights are copied straight into the
+     * network, so loading takes about as long as reading the file.
+     * @param file The file to load.
+     * @return The network stored in the file.
+     * @throws IOException if the file cannot be read or is not a valid model.
+     */
+
+    public static Network load(Path file) throws IOException {
+        return ModelFile.load(file);
+    }
+
+    /**
+     * Initializes the weights of this network, drawn from a normal distribution with the given standard deviation.
+     */
+
+    private DenseMatrix initWeights(int numOfWeights, int numOfNeurons, double scale, Random randomizer) {
+        DenseMatrix result = new DenseMatrix(numOfNeurons, numOfWeights);
+        for(int i = 0; i < result.rows(); i++) {
+            for(int j = 0; j < result.cols(); j++) {
+                result.set(i, j, randomizer.nextGaussian() * scale);
             }
         }
         return result;
@@ -59,310 +186,607 @@ public class Network {
     }
 
     /**
-     * Initializes the error arrays of this network.
+     * Returns the weights of this network, weights[layer] is numOfNeurons x numOfWeights. The matrices are the ones this
+     * network uses, so changes to them change the network.
      */
 
-    private void initError() {
-        initBiasError();
-        initWeightError();
+    DenseMatrix[] getWeights() {
+        return weights;
     }
 
     /**
-     * Initializes the totalBiasError of this network.
+     * Returns the biases of this network, bias[layer] has one entry per neuron. The arrays are the ones this network
+     * uses, so changes to them change the network.
      */
 
-    private void initBiasError() {
-        totalBiasError = new double[bias.length][];
-        for(int i = 0; i < totalBiasError.length; i++) {
-            double[] temp = new double[bias[i].length];
-            totalBiasError[i] = temp;
-        }
+    double[][] getBias() {
+        return bias;
     }
 
     /**
-     * Initializes the totalWeightError of this network.
+     * Sets the loss this network is trained to minimize, quadratic unless set. Cross-entropy needs a sigmoid output
+     * layer and log-likelihood a softmax output layer, both learn faster than quadratic because the output error is not
+     * scaled down by the derivative of the output activation.
+     * @throws IllegalArgumentException if the loss does not match the activation of the output layer.
      */
 
-    private void initWeightError() {
-        totalWeightError = new double[weights.length][][];
-        for(int i = 0; i < totalBiasError.length; i++) {
-            double[][] temp = new double[weights[i].length][];
-            for(int j = 0; j <weights[i].length; j++) {
-                double[] aux = new double[weights[i][j].length];
-                temp[j] = aux;
+    void setLoss(Loss loss) {
+        Activation output = activations[activations.length - 1];
+        if(!loss.matches(output))
+            throw new IllegalArgumentException("Loss " + loss + " cannot be used with a " + output + " output layer");
+        this.loss = loss;
+    }
+
+    /**
+     * Returns the loss this network is trained to minimize.
+     */
+
+    Loss getLoss() {
+        return loss;
+    }
+
+    /**
+     * Returns one workspace per worker for batches of the given size, workspace w holds the rows
+     * firstRow(w) to firstRow(w + 1) of a batch. The workspaces are kept so that later batches reuse their buffers.
+     * @param batchSize The number of images in a batch.
+     * @param workers The number of workers the batch is split between.
+     */
+
+    private Workspace[] getWorkspaces(int batchSize, int workers) {
+        if(workspaces == null || workspaces.length != workers || workspaceBatchSize != batchSize) {
+            workspaces = new Workspace[workers];
+            workspaceBatchSize = batchSize;
+            for(int i = 0; i < workers; i++) {
+                workspaces[i] = new Workspace(weights, firstRow(i + 1, batchSize, workers) - firstRow(i, batchSize, workers));
             }
-            totalWeightError[i] = temp;
         }
+        return workspaces;
+    }
+
+    /**
+     * Returns the first row of a batch of the given size that the given worker is responsible for.
+     */
+
+    private static int firstRow(int worker, int batchSize, int workers) {
+        return (int) ((long) worker * batchSize / workers);
+    }
+
+    /**
+     * Returns the workspace used for testing with batches of the given size.
+     * @param rows The number of images in a batch.
+     */
+
+    private Workspace getTestWorkspace(int rows) {
+        if(testWorkspace == null || testWorkspace.rows() != rows)
+            testWorkspace = new Workspace(weights, rows, false);
+        return testWorkspace;
+    }
+
+    /**
+     * Runs training on this network on a single thread and prints a result of the testing.
+     * @see #training(Dataset, Dataset, int, double, int, int)
+     */
+
+    void training(Dataset trainingSet, Dataset testSet, int batchSize, double learningRate, int epochs) {
+        training(trainingSet, testSet, batchSize, learningRate, epochs, 1);
     }
 
     /**
      * Runs training on this network and prints a result of the testing.
-     * @param trainingImages Training images to train on.
-     * @param trainingLabels Training labels to train on.
-     * @param testImages Testing images to test on.
-     * @param testLabels Testing labels to test on.
+     * Each batch is split between the threads, every thread feeds its part forward and backpropagates it in its own
+     * workspace, and the gradients of the workspaces are added up pairwise as a tree before gradient descent.
+     * With one thread, once the workspace is allocated for the first batch a training step does not allocate anything.
+     * The batches are shuffled, copied and normalized by a BatchSource on a background thread while the previous batch
+     * is trained on. The datasets are only read. With -Dtelemetry.file=... the time of every phase, the throughput and
+     * the allocations and garbage collections are written to the file, see TrainingTelemetry.
+     * @param trainingSet Training images and labels to train on.
+     * @param testSet Testing images and labels to test on.
      * @param batchSize The batch size of each batch in each epoch.
      * @param learningRate The learning rate for the training.
      * @param epochs How many epochs the network should train for.
+     * @param threads How many threads to train on, at most batchSize are used.
+     * @throws CancellationException if the calling thread is interrupted, the network is then partly trained and the
+     *                               interrupt status is kept.
      */
 
-    void training(double[][] trainingImages, int[] trainingLabels, double[][] testImages, int[] testLabels, int batchSize, double learningRate, int epochs) {
-        int totalBatches = trainingImages.length / batchSize;
-        for(int i = 0; i < epochs; i++) {
-            int currentImage = 0;
-            for(int j = 0; j < totalBatches; j++) {
-                for(int k = 0; k < batchSize; k++) {
-                    double[] output = feedForward(trainingImages[currentImage], 0);
-                    backPropagate(output, trainingImages[currentImage], trainingLabels[currentImage]);
-                    currentImage++;
+    void training(Dataset trainingSet, Dataset testSet, int batchSize, double learningRate, int epochs, int threads) {
+        if(threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive but was " + threads);
+        int workers = Math.min(threads, batchSize);
+        Workspace[] workspaces = getWorkspaces(batchSize, workers);
+        ForkJoinPool pool = workers > 1 ? new ForkJoinPool(workers) : null;
+        long startTime = System.nanoTime();
+        EpochSampler sampler = new EpochSampler(trainingSet.size(), randomizer.nextLong());
+        try(TrainingTelemetry telemetry = TrainingTelemetry.ENABLED ? TrainingTelemetry.open() : null;
+            BatchSource source = new BatchSource(trainingSet, batchSize, epochs, PREFETCH_BUFFERS, sampler, telemetry)) {
+            this.telemetry = telemetry;
+            for(int i = 0; i < epochs; i++) {
+                FlightEvents.EpochEvent epochEvent = new FlightEvents.EpochEvent();
+                epochEvent.begin();
+                for(int j = 0; j < source.batchesPerEpoch(); j++) {
+                    // Only allocated while a recording wants it, so training without one stays free of garbage.
+                    FlightEvents.BatchEvent batchEvent = FlightEvents.BATCH.isEnabled() ? new FlightEvents.BatchEvent() : null;
+                    if(batchEvent != null)
+                        batchEvent.begin();
+                    long time = TrainingTelemetry.start();
+                    BatchSource.Batch batch = source.take();
+                    if(TrainingTelemetry.ENABLED)
+                        telemetry.lap(TrainingTelemetry.Phase.BATCH_WAIT, time);
+                    if(pool == null)
+                        runBatch(workspaces[0], batch, 0);
+                    else
+                        pool.invoke(new BatchTask(workspaces, 0, workers, batch, batchSize));
+                    source.release(batch);
+                    time = TrainingTelemetry.start();
+                    doGradientDescent(workspaces[0], learningRate, batchSize);
+                    if(TrainingTelemetry.ENABLED) {
+                        telemetry.lap(TrainingTelemetry.Phase.GRADIENT_DESCENT, time);
+                        telemetry.batchDone(i, j, batchSize);
+                    }
+                    if(batchEvent != null && batchEvent.shouldCommit()) {
+                        batchEvent.epoch = i;
+                        batchEvent.batch = j;
+                        batchEvent.batchSize = batchSize;
+                        batchEvent.commit();
+                    }
+                }
+                long time = TrainingTelemetry.start();
+                Evaluation evaluation = doTest(testSet, batchSize, i, startTime);
+                if(TrainingTelemetry.ENABLED) {
+                    telemetry.lap(TrainingTelemetry.Phase.EVALUATION, time);
+                    telemetry.epochDone(i, source.batchesPerEpoch(), evaluation.accuracy(), evaluation.loss);
+                }
+                if(epochEvent.shouldCommit()) {
+                    epochEvent.epoch = i;
+                    epochEvent.layout = layout();
+                    epochEvent.batchSize = batchSize;
+                    epochEvent.threads = workers;
+                    epochEvent.samples = (long) source.batchesPerEpoch() * batchSize;
+                    epochEvent.accuracy = evaluation.accuracy();
+                    epochEvent.loss = evaluation.loss;
+                    epochEvent.commit();
                 }
-                doGradientDescent(learningRate, batchSize);
             }
-            doTest(testImages, testLabels, i);
-            shuffle(trainingImages, trainingLabels);
-            shuffle(testImages, testLabels);
+        } catch(InterruptedException e) {
+            // The network is only partly trained, the caller must not mistake it for a finished run.
+            Thread.currentThread().interrupt();
+            CancellationException cancelled = new CancellationException("Training was interrupted");
+            cancelled.initCause(e);
+            throw cancelled;
+        } finally {
+            this.telemetry = null;
+            if(pool != null)
+                pool.shutdown();
         }
     }
 
     /**
-     * Runs stochastic gradient descent on this network.
-     * @param learningRate the learning given at training().
-     * @param batchSize the batch size given at training().
+     * Feeds the images of the batch starting at row start forward and backpropagates them, leaving their summed
+     * gradients in the workspace.
+     * @param workspace The workspace to use, it determines how many images are used.
+     * @param batch The batch to take the images and labels from.
+     * @param start The first row of the batch to use.
      */
 
-    private void doGradientDescent(double learningRate, int batchSize) {
-        int layers = totalBiasError.length;
-        double gradient = learningRate / (double) batchSize;
-        for(int i = 0; i < layers; i++) {
-            weights[i] = Matrix.subtract(weights[i], Matrix.constantMultiplication(totalWeightError[i], gradient));
-            bias[i] = Matrix.subtract(bias[i], Matrix.constantMultiplication(totalBiasError[i], gradient));
+    private void runBatch(Workspace workspace, BatchSource.Batch batch, int start) {
+        workspace.resetError();
+        workspace.input.copyFrom(batch.input, start);
+        long time = TrainingTelemetry.start();
+        feedForward(workspace, workspace.input, 0);
+        if(TrainingTelemetry.ENABLED)
+            time = telemetry.lap(TrainingTelemetry.Phase.FORWARD, time);
+        backPropagate(workspace, batch.labels, start);
+        if(TrainingTelemetry.ENABLED)
+            telemetry.lap(TrainingTelemetry.Phase.BACK_PROPAGATE, time);
+    }
+
+    /**
+     * Runs the workers from to to on their part of a batch and adds their gradients into the workspace of worker from.
+     */
+
+    @SuppressWarnings("serial")
+    private class BatchTask extends RecursiveAction {
+
+        private final Workspace[] workspaces;
+        private final int from, to, batchSize;
+        private final BatchSource.Batch batch;
+
+        BatchTask(Workspace[] workspaces, int from, int to, BatchSource.Batch batch, int batchSize) {
+            this.workspaces = workspaces;
+            this.from = from;
+            this.to = to;
+            this.batch = batch;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1) {
+                runBatch(workspaces[from], batch, firstRow(from, batchSize, workspaces.length));
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(workspaces, from, middle, batch, batchSize),
+                          new BatchTask(workspaces, middle, to, batch, batchSize));
+                workspaces[from].addError(workspaces[middle]);
+            }
         }
-        initError();
     }
 
     /**
-     * Runs a test on this network and prints the amount of correct images.
-     * @param images The images to test on.
-     * @param labels The labels to test on.
-     * @param epoch The current epoch.
+     * Copies a batch of images into one contiguous matrix where each row is one image.
+     * @param images The images to take the batch from.
+     * @param start The index of the first image in the batch.
+     * @param result The matrix to copy the batch into, it holds result.rows() images.
      */
 
-    private void doTest(double[][] images, int[] labels, int epoch) {
-        int correctImages = 0;
-        for(int i = 0; i < images.length; i++) {
-            double[] output = feedForward(images[i], 0);
-            if(isCorrect(output, labels[i]))
-                correctImages++;
+    private static void getBatch(double[][] images, int start, DenseMatrix result) {
+        for(int i = 0; i < result.rows(); i++) {
+            result.setRow(i, images[start + i]);
         }
-        System.out.println("Epoch: " + epoch + " Correct Images: " + correctImages + "/" + images.length);
     }
 
     /**
-     * Shuffles the given inputs.
-     * @param images Images to shuffle.
-     * @param labels Labels to shuffle.
+     * Runs stochastic gradient descent on this network.
+     * @param workspace the workspace holding the gradients summed over the batch.
+     * @param learningRate the learning given at training().
+     * @param batchSize the batch size given at training().
      */
 
-    private void shuffle(double[][] images, int[] labels) {
-        Random randomizer = new Random();
-        for(int i = images.length - 1; i > 0; i--) {
-            int index = randomizer.nextInt(i);
-            swap(images, index, i);
-            swap(labels, index, i);
+    private void doGradientDescent(Workspace workspace, double learningRate, int batchSize) {
+        int layers = weights.length;
+        double gradient = learningRate / (double) batchSize;
+        for(int i = 0; i < layers; i++) {
+            Matrix.scaledAdditionInto(weights[i], workspace.totalWeightError[i], -gradient);
+            Matrix.scaledAdditionInto(bias[i], workspace.totalBiasError[i], -gradient);
         }
     }
 
     /**
-     * Swaps the two given indices in the given array.
-     * @param array array to swap indices on.
-     * @param index1 index 1 to swap with.
-     * @param index2 index 2 to swap with.
+     * Runs a test on this network and prints the amount of correct images, the mean loss and the time since training
+     * started.
+     * @param dataset The images and labels to test on.
+     * @param batchSize The number of images fed forward at a time.
+     * @param epoch The current epoch.
+     * @param startTime The System.nanoTime() at which training started.
+     * @return Returns the number of correctly classified images and the mean loss.
      */
 
-    private void swap(double[][] array, int index1, int index2) {
-        double[] temp = array[index1];
-        array[index1] = array[index2];
-        array[index2] = temp;
+    private Evaluation doTest(Dataset dataset, int batchSize, int epoch, long startTime) {
+        Evaluation evaluation = evaluate(dataset, batchSize);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println("Epoch: " + epoch + " Correct Images: " + evaluation.correct + "/" + dataset.size()
+                + " Loss: " + String.format("%.4f", evaluation.loss) + " Time: " + String.format("%.2fs", seconds));
+        return evaluation;
     }
 
     /**
-     * Swaps the two given indices of the given array.
-     * @param array The array to swap on.
-     * @param index1 Index 1 to swap with.
-     * @param index2 Index 2 to swap with.
+     * Feeds the images forward in this network, counts how many of them are classified correctly and averages the loss
+     * this network is trained with over them.
+     * @param dataset The images and labels to test on.
+     * @param batchSize The number of images fed forward at a time.
+     * @return Returns the number of correctly classified images and the mean loss.
      */
 
-    private void swap(int[] array, int index1, int index2) {
-        int temp = array[index1];
-        array[index1] = array[index2];
-        array[index2] = temp;
+    Evaluation evaluate(Dataset dataset, int batchSize) {
+        FlightEvents.EvaluationEvent event = new FlightEvents.EvaluationEvent();
+        event.begin();
+        int correctImages = 0;
+        double totalLoss = 0.0;
+        Workspace full = getTestWorkspace(batchSize);
+        for(int i = 0; i < dataset.size(); i += batchSize) {
+            Workspace workspace = full.head(Math.min(batchSize, dataset.size() - i));
+            dataset.copyBatch(i, workspace.input);
+            DenseMatrix output = feedForward(workspace, workspace.input, 0);
+            for(int j = 0; j < output.rows(); j++) {
+                int label = dataset.label(i + j);
+                if(isCorrect(output, j, label))
+                    correctImages++;
+                totalLoss += loss.loss(output.data(), output.index(j, 0), output.cols(), label);
+            }
+        }
+        Evaluation evaluation = new Evaluation(correctImages, dataset.size(), totalLoss / dataset.size());
+        if(event.shouldCommit()) {
+            event.layout = layout();
+            event.samples = dataset.size();
+            event.correct = correctImages;
+            event.accuracy = evaluation.accuracy();
+            event.loss = evaluation.loss;
+            event.commit();
+        }
+        return evaluation;
     }
 
     /**
-     * Feeds the input forward in this network recursively.
-     * @param input The image to feed forward.
+     * Feeds a batch of inputs forward in this network recursively.
+     * @param workspace The workspace holding the buffers for this batch.
+     * @param input The batch to feed forward, one image per row.
      * @param layer The current layer should be = 0 when method is called.
-     * @return The output of this network.
+     * @return The output of this network, one row per image in the batch.
      */
 
-    private double[] feedForward(double[] input, int layer) {
+    private DenseMatrix feedForward(Workspace workspace, DenseMatrix input, int layer) {
         if(layer == weights.length - 1)
-            return input(input, layer);
+            return input(workspace, input, layer);
         else
-            return feedForward(input(input, layer), layer + 1);
+            return feedForward(workspace, input(workspace, input, layer), layer + 1);
     }
 
     /**
-     * Runs the input through the layer and calculates the weighted input and activation for the given layer.
-     * @param input the image to calculate on.
+     * Runs the batch through the layer and calculates the weighted input and activation for the given layer.
+     * @param workspace the workspace holding the buffers for this batch.
+     * @param input the batch to calculate on.
      * @param layer the current layer.
      * @return returns the activation for the given layer.
      */
 
-    private double[] input(double[] input, int layer) {
-        weightedInput[layer] = weightedInput(input, layer);
-        activation[layer] = activation(weightedInput[layer]);
-        return activation[layer];
+    private DenseMatrix input(Workspace workspace, DenseMatrix input, int layer) {
+        weightedInput(workspace, input, layer);
+        activation(workspace.activation[layer], workspace.weightedInput[layer], activations[layer]);
+        return workspace.activation[layer];
     }
 
     /**
-     * Returns the weighted input for the given layer in this network.
-     * @param input The image to calculate the weighted input from.
+     * Calculates the weighted input for the given layer in this network into the workspace. The whole batch is done as
+     * one matrix product input * weights^T, read straight from the row-major weights, after which the bias is added to
+     * every row.
+     * @param workspace The workspace holding the buffers for this batch.
+     * @param input The batch to calculate the weighted input from.
      * @param layer The layer to calculate the weighted input on.
-     * @return Returns the weighted input from this layer.
      */
 
-    private double[] weightedInput(double[] input, int layer) {
-        return Matrix.add(Matrix.multiplication(weights[layer], input), bias[layer]);
+    private void weightedInput(Workspace workspace, DenseMatrix input, int layer) {
+        DenseMatrix result = workspace.weightedInput[layer];
+        Matrix.multiplicationTransposedInto(result, input, weights[layer], false);
+        Matrix.addInto(result, result, bias[layer]);
     }
 
     /**
-     * Returns the activation from this given input using the sigmoid function.
-     * @param input The array to apply the sigmoid function to.
-     * @return Returns a new array where the sigmoid function has been applied to all indices from the input.
+     * Calculates the activation from this given input using the activation function of the layer, a row at a time.
+     * @param result The matrix to write the activation to.
+     * @param input The matrix to apply the activation function to.
+     * @param function The activation function of the layer.
      */
 
-    private static double[] activation(double[] input) {
-        double[] result = new double[input.length];
-        for(int i = 0; i < result.length; i++) {
-            result[i] = Functions.sigmoid(input[i]);
+    private static void activation(DenseMatrix result, DenseMatrix input, Activation function) {
+        for(int i = 0; i < result.rows(); i++) {
+            function.apply(input.data(), input.index(i, 0), result.data(), result.index(i, 0), result.cols());
         }
-        return result;
     }
 
     /**
      * backPropagates this network by first calculating the output error and then calls backPropagateRec to do all the other layers.
-     * @param output The output from the network from feeding forward.
-     * @param input The input used to get the output.
-     * @param label The label that corresponds to the input.
+     * The batch and the output from feeding it forward are read from the workspace.
+     * @param workspace The workspace the batch was fed forward in.
+     * @param labels The labels, the label of row i in the workspace is at labels[start + i].
+     * @param start The index of the first label of the workspace.
      */
 
-    private void backPropagate(double[] output, double[] input, int label) {
-        int layer = totalBiasError.length - 1;
-        double[] outputError = getOutputError(output, label);
-        addToBiasError(outputError, layer);
-        addToWeightError(input, outputError, layer);
-        backPropagateRec(outputError, input, layer - 1);
+    private void backPropagate(Workspace workspace, int[] labels, int start) {
+        int layer = weights.length - 1;
+        DenseMatrix outputError = getOutputError(workspace, labels, start);
+        addToBiasError(workspace, outputError, layer);
+        addToWeightError(workspace, outputError, layer);
+        backPropagateRec(workspace, outputError, layer - 1);
     }
 
     /**
      * backPropagates on this network recursively.
-     * @param prevError The error from the previous layer.
-     * @param input The input is the image used to get output from feeding forward.
+     * @param workspace The workspace the batch was fed forward in.
+     * @param prevError The error from the previous layer, one row per image.
      * @param layer The current layer to backPropagate.
      */
 
-    private void backPropagateRec(double[] prevError, double[] input, int layer) {
+    private void backPropagateRec(Workspace workspace, DenseMatrix prevError, int layer) {
         if(layer >= 0) {
-        double[] weightedError = getWeightedError(prevError, layer);
-        double[] error = Matrix.hadamardProduct(weightedError, sigmoidPrime(weightedInput[layer]));
-        addToBiasError(error, layer);
-        addToWeightError(input, error, layer);
-        backPropagateRec(error, input, layer - 1);
+        DenseMatrix error = getWeightedError(workspace, prevError, layer);
+        multiplyDerivative(error, workspace.activation[layer], activations[layer]);
+        addToBiasError(workspace, error, layer);
+        addToWeightError(workspace, error, layer);
+        backPropagateRec(workspace, error, layer - 1);
         }
     }
 
     /**
+     * @param workspace The workspace to write the weighted error to.
      * @param prevError The error from layer + 1.
      * @param layer The current layer to get the weighted error from.
-     * @return The weighted error from the givens layer.
+     * @return The weighted error from the givens layer, one row per image.
      */
 
-    private double[] getWeightedError(double[] prevError, int layer) {
-        return Matrix.multiplication(Matrix.transpose(weights[layer + 1]), prevError);
+    private DenseMatrix getWeightedError(Workspace workspace, DenseMatrix prevError, int layer) {
+        Matrix.multiplicationInto(workspace.error[layer], prevError, weights[layer + 1], false);
+        return workspace.error[layer];
     }
 
     /**
-     * Calculates the output error from the output gotten from feeding forward an input on this network.
-     * @param output The output from feeding forward on this network.
-     * @param label The label that corresponds to the input given when feeding forward.
-     * @return Returns the error of the output layer in this network.
+     * Calculates the output error from the output gotten from feeding forward a batch on this network.
+     * @param workspace The workspace the batch was fed forward in.
+     * @param labels The labels that corresponds to the batch given when feeding forward.
+     * @param start The index of the first label of the batch.
+     * @return Returns the error of the output layer in this network, one row per image.
      */
 
-    private double[] getOutputError(double[] output, int label) {
-        double[] result = new double[output.length];
-        for(int i = 0; i < result.length; i++) {
-            if(i == label)
-                result[i] = output[i] - 1.0;
-            else
-                result[i] = output[i] - 0.0;
+    private DenseMatrix getOutputError(Workspace workspace, int[] labels, int start) {
+        int layer = weights.length - 1;
+        DenseMatrix output = workspace.activation[layer];
+        DenseMatrix result = workspace.error[layer];
+        for(int i = 0; i < result.rows(); i++) {
+            loss.outputError(activations[layer], output.data(), output.index(i, 0), output.cols(), labels[start + i],
+                             result.data(), result.index(i, 0));
         }
-        return Matrix.hadamardProduct(result, sigmoidPrime(weightedInput[weightedInput.length - 1]));
+        return result;
     }
 
     /**
-     *
-     *
-     * Adds the given error to the total bias error at the given layer.
-     * @param error The error to add.
+     * Adds the error of every image in the batch to the total bias error at the given layer.
+     * @param workspace The workspace holding the total bias error.
+     * @param error The error to add, one row per image.
      * @param layer The layer to add it to.
      */
 
-    private void addToBiasError(double[] error, int layer) {
-        totalBiasError[layer] = Matrix.add(totalBiasError[layer], error);
+    private void addToBiasError(Workspace workspace, DenseMatrix error, int layer) {
+        Matrix.columnSumInto(workspace.totalBiasError[layer], error, true);
     }
 
     /**
-     * Adds the given error to the total weight error in the given layer.
-     * @param error The error to add on.
+     * Adds the given error to the total weight error in the given layer. The sum over the batch is done as one
+     * matrix product error^T * input, computed as rank-1 updates without transposing the error.
+     * @param workspace The workspace the batch was fed forward in.
+     * @param error The error to add on, one row per image.
      * @param layer The layer to add it on to.
      */
 
-    private void addToWeightError(double[] input, double[] error, int layer) {
-        if(layer == 0)
-            totalWeightError[layer] = Matrix.add(totalWeightError[layer], Matrix.multiplication(error, Matrix.transpose(input)));
-        else
-            totalWeightError[layer] = Matrix.add(totalWeightError[layer], Matrix.multiplication(error, Matrix.transpose(activation[layer - 1])));
+    private void addToWeightError(Workspace workspace, DenseMatrix error, int layer) {
+        DenseMatrix input = layer == 0 ? workspace.input : workspace.activation[layer - 1];
+        Matrix.transposedMultiplicationInto(workspace.totalWeightError[layer], error, input, true);
     }
 
     /**
-     * Calculates the sigmoid prime of the given input.
-     * @param input The input to calculate the sigmoid prime.
-     * @return Returns a new array with each index having applied sigmoid prime on each index in the input.
+     * Multiplies each row of the error with the derivative of the activation function at the same row, calculated from
+     * the activation stored when feeding forward instead of from the weighted input.
+     * @param error The error to multiply, it is overwritten with the result.
+     * @param activation The activation of the layer.
+     * @param function The activation function of the layer.
      */
 
-    private static double[] sigmoidPrime(double[] input) {
-        double[] result = new double[input.length];
-        for(int i = 0; i < result.length; i++) {
-            result[i] = Functions.sigmoidPrime(input[i]);
+    private static void multiplyDerivative(DenseMatrix error, DenseMatrix activation, Activation function) {
+        for(int i = 0; i < error.rows(); i++) {
+            function.multiplyDerivative(activation.data(), activation.index(i, 0), error.data(), error.index(i, 0), error.cols());
         }
+    }
+
+    /**
+     * Classifies the given image. This only reads the network and uses scratch space local to the calling thread,
+     * so any number of threads may call it at the same time, as long as the network is not being trained meanwhile.
+     * @param image The image to classify.
+     * @return Returns the predicted digit and the output of every neuron in the output layer.
+     */
+
+    public Prediction predict(double[] image) {
+        FlightEvents.InferenceEvent event = newInferenceEvent();
+        Workspace workspace = singlePredictionWorkspace.get();
+        workspace.input.setRow(0, image);
+        DenseMatrix output = feedForward(workspace, workspace.input, 0);
+        Prediction result = new Prediction(highest(output, 0), output.getRow(0));
+        commitInference(event, "predict", 1);
+        return result;
+    }
+
+    /**
+     * Classifies the given images on the calling thread. The images are fed forward PREDICTION_BATCH_SIZE at a time
+     * through scratch space local to the calling thread, so like predict() it may be called from any number of threads.
+     * @param images The images to classify.
+     * @return Returns a prediction for each image.
+     */
+
+    public Prediction[] predictBatch(double[][] images) {
+        FlightEvents.InferenceEvent event = newInferenceEvent();
+        Prediction[] result = new Prediction[images.length];
+        predictBatch(images, 0, images.length, result);
+        commitInference(event, "predictBatch", images.length);
+        return result;
+    }
+
+    /**
+     * Classifies the given images using all cores. The images are split into chunks of PREDICTION_BATCH_SIZE that are
+     * classified in parallel on the common ForkJoinPool.
+     * @param images The images to classify.
+     * @return Returns a prediction for each image.
+     */
+
+    public Prediction[] predictBatchParallel(double[][] images) {
+        FlightEvents.InferenceEvent event = newInferenceEvent();
+        Prediction[] result = new Prediction[images.length];
+        int chunks = (images.length + PREDICTION_BATCH_SIZE - 1) / PREDICTION_BATCH_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int start = chunk * PREDICTION_BATCH_SIZE;
+            predictBatch(images, start, Math.min(images.length, start + PREDICTION_BATCH_SIZE), result);
+        });
+        commitInference(event, "predictBatchParallel", images.length);
         return result;
     }
 
+    /**
+     * Classifies the images from start to end into result on the calling thread.
+     */
+
+    private void predictBatch(double[][] images, int start, int end, Prediction[] result) {
+        Workspace full = predictionWorkspace.get();
+        for(int i = start; i < end; i += PREDICTION_BATCH_SIZE) {
+            Workspace workspace = full.head(Math.min(PREDICTION_BATCH_SIZE, end - i));
+            getBatch(images, i, workspace.input);
+            DenseMatrix output = feedForward(workspace, workspace.input, 0);
+            for(int j = 0; j < output.rows(); j++) {
+                result[i + j] = new Prediction(highest(output, j), output.getRow(j));
+            }
+        }
+    }
+
+    /**
+     * Returns a begun inference event while the event is enabled, otherwise null, so predictions allocate nothing for
+     * it without a recording.
+     */
+
+    private static FlightEvents.InferenceEvent newInferenceEvent() {
+        if(!FlightEvents.INFERENCE.isEnabled())
+            return null;
+        FlightEvents.InferenceEvent event = new FlightEvents.InferenceEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Fills in and commits an inference event if it is recorded.
+     */
+
+    private void commitInference(FlightEvents.InferenceEvent event, String method, int images) {
+        if(event != null && event.shouldCommit()) {
+            event.method = method;
+            event.layout = layout();
+            event.images = images;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the layout of this network as text, e.g. "784-30-10" or "784-100:relu-10:softmax".
+     */
+
+    String layout() {
+        return getLayout().toString();
+    }
+
+    /**
+     * Returns the number of neurons and the activation of every layer of this network.
+     */
+
+    Layout getLayout() {
+        return new Layout(neurons(weights), activations);
+    }
+
     /**
      * Checks whether the given output from feeding forward is correct.
      * @param output The output from feeding forward in this network.
+     * @param row The row of the output to check.
      * @param label The label that corresponds to the input used to get the output.
      * @return Returns true if the output is correct.
      */
 
-    private static boolean isCorrect(double[] output, int label) {
+    private static boolean isCorrect(DenseMatrix output, int row, int label) {
+        return (highest(output, row) == label);
+    }
+
+    /**
+     * Returns the index of the highest value in the given row of the output, which is the digit the network predicts.
+     */
+
+    private static int highest(DenseMatrix output, int row) {
         int highest = 0;
-        for(int i = 0; i < output.length; i++) {
-            if(output[i] >= output[highest])
+        for(int i = 0; i < output.cols(); i++) {
+            if(output.get(row, i) >= output.get(row, highest))
                 highest = i;
         }
-        return (highest == label);
+        return highest;
     }
 
     /**
@@ -374,8 +798,8 @@ public class Network {
         StringBuilder result = new StringBuilder();
         for(int i = 0; i < weights.length; i++) {
             result.append("Layer: ").append(i).append(", ");
-            result.append("Number of Neurons: ").append(weights[i].length).append(", ");
-            result.append("Number of Weights per neuron: ").append(weights[i][0].length).append("\n");
+            result.append("Number of Neurons: ").append(weights[i].rows()).append(", ");
+            result.append("Number of Weights per neuron: ").append(weights[i].cols()).append("\n");
             result.append("Weights: \n");
             result.append(weightsToString(i));
             result.append("Bias: ");
@@ -395,13 +819,13 @@ public class Network {
 
     private String weightsToString(int layer) {
         StringBuilder result = new StringBuilder();
-        for(int i = 0; i < weights[layer].length; i++) {
+        for(int i = 0; i < weights[layer].rows(); i++) {
             result.append("Neuron ").append(i).append(": [");
-            for(int j = 0; j < weights[layer][i].length; j++) {
-                if(j != weights[layer][i].length - 1)
-                    result.append(weights[layer][i][j]).append(", ");
+            for(int j = 0; j < weights[layer].cols(); j++) {
+                if(j != weights[layer].cols() - 1)
+                    result.append(weights[layer].get(i, j)).append(", ");
                 else
-                    result.append(weights[layer][i][j]).append("] \n");
+                    result.append(weights[layer].get(i, j)).append("] \n");
             }
         }
         return result.toString();
@@ -422,4 +846,28 @@ public class Network {
         }
         return result.toString();
     }
+
+    /**
+     * The result of classifying a dataset, the number of correctly classified images and the mean loss per image.
+     */
+
+    static class Evaluation {
+
+        final int correct, size;
+        final double loss;
+
+        Evaluation(int correct, int size, double loss) {
+            this.correct = correct;
+            this.size = size;
+            this.loss = loss;
+        }
+
+        /**
+         * Returns the fraction of the images that were classified correctly.
+         */
+
+        double accuracy() {
+            return (double) correct / size;
+        }
+    }
 }
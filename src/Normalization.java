@@ -0,0 +1,142 @@
+import Math.Functions;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class Normalization {
+
+    // Number of values a pixel can take.
+    private static final int PIXEL_VALUES = 256;
+
+    // table[pixel] is the normalized value of the unsigned pixel.
+    private final double[] table;
+    private final float[] floatTable;
+    private final String name;
+
+    /**
+     * Turns raw pixels into the values the network is fed. A pixel only has 256 possible values, so every normalization
+     * is a lookup in a table computed once, and the images can be kept as bytes until a batch is put together.
+     * @param table The normalized value of each pixel value, must have 256 entries.
+     * @param name A short description of the normalization.
+     */
+
+    private Normalization(double[] table, String name) {
+        if(table.length != PIXEL_VALUES)
+            throw new IllegalArgumentException("Expected " + PIXEL_VALUES + " entries but received " + table.length);
+        this.table = table;
+        this.floatTable = new float[PIXEL_VALUES];
+        for(int i = 0; i < PIXEL_VALUES; i++) {
+            floatTable[i] = (float) table[i];
+        }
+        this.name = name;
+    }
+
+    /**
+     * The sigmoid of the pixel value, but 0 for blank pixels. This is the preprocessing the network has always used.
+     */
+
+    static Normalization sigmoid() {
+        double[] table = new double[PIXEL_VALUES];
+        for(int i = 1; i < PIXEL_VALUES; i++) {
+            table[i] = Functions.sigmoid(i);
+        }
+        return new Normalization(table, "sigmoid");
+    }
+
+    /**
+     * The pixel value divided by 255, so pixels are between 0 and 1.
+     */
+
+    static Normalization scaled() {
+        double[] table = new double[PIXEL_VALUES];
+        for(int i = 0; i < PIXEL_VALUES; i++) {
+            table[i] = i / 255.0;
+        }
+        return new Normalization(table, "scaled");
+    }
+
+    /**
+     * The pixel value minus the mean divided by the standard deviation.
+     * @param mean The mean pixel value.
+     * @param standardDeviation The standard deviation of the pixel values, must be positive.
+     */
+
+    static Normalization standardized(double mean, double standardDeviation) {
+        if(!(standardDeviation > 0.0))
+            throw new IllegalArgumentException("Standard deviation must be positive but was " + standardDeviation);
+        double[] table = new double[PIXEL_VALUES];
+        for(int i = 0; i < PIXEL_VALUES; i++) {
+            table[i] = (i - mean) / standardDeviation;
+        }
+        return new Normalization(table, "standardized(" + mean + ", " + standardDeviation + ")");
+    }
+
+    /**
+     * Standardizes with the mean and standard deviation of every pixel in the given images. Only the raw pixels are
+     * used, so the normalization the dataset was loaded with does not matter. Apply the result to the training and
+     * test images with Dataset.withNormalization, so both are standardized with the statistics of the training images.
+     * @param dataset The images to take the mean and standard deviation of, usually the training images.
+     */
+
+    static Normalization standardized(Dataset dataset) {
+        long[] histogram = dataset.histogram();
+        long count = (long) dataset.size() * dataset.imageSize();
+        double mean = 0.0;
+        for(int i = 0; i < PIXEL_VALUES; i++) {
+            mean += (double) i * histogram[i];
+        }
+        mean /= count;
+        double variance = 0.0;
+        for(int i = 0; i < PIXEL_VALUES; i++) {
+            variance += (i - mean) * (i - mean) * histogram[i];
+        }
+        return standardized(mean, Math.sqrt(variance / count));
+    }
+
+    /**
+     * Returns the normalized value of the given pixel.
+     */
+
+    double apply(byte pixel) {
+        return table[pixel & 0xFF];
+    }
+
+    /**
+     * Normalizes length pixels starting at pixels.get(offset) into result starting at result[resultOffset].
+     */
+
+    void apply(ByteBuffer pixels, int offset, double[] result, int resultOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            result[resultOffset + i] = table[pixels.get(offset + i) & 0xFF];
+        }
+    }
+
+    /**
+     * Normalizes length pixels starting at pixels.get(offset) into result starting at result[resultOffset] in single
+     * precision.
+     */
+
+    void apply(ByteBuffer pixels, int offset, float[] result, int resultOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            result[resultOffset + i] = floatTable[pixels.get(offset + i) & 0xFF];
+        }
+    }
+
+    /**
+     * Returns the normalized image.
+     */
+
+    double[] apply(byte[] image) {
+        double[] result = new double[image.length];
+        apply(ByteBuffer.wrap(image), 0, result, 0, image.length);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
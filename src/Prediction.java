@@ -0,0 +1,45 @@
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+public class Prediction {
+
+    private final int digit;
+    private final double[] scores;
+
+    /**
+     * The result of classifying one image.
+     * @param digit The digit the network predicts.
+     * @param scores The output of every neuron in the output layer, scores[i] is the score for digit i.
+     */
+
+    Prediction(int digit, double[] scores) {
+        this.digit = digit;
+        this.scores = scores;
+    }
+
+    /**
+     * Returns the predicted digit.
+     */
+
+    public int getDigit() {
+        return digit;
+    }
+
+    /**
+     * Returns a copy of the scores, index i is the score for digit i.
+     */
+
+    public double[] getScores() {
+        return scores.clone();
+    }
+
+    /**
+     * @return Returns a textual representation of this prediction.
+     */
+
+    @Override
+    public String toString() {
+        return "Digit: " + digit + " Scores: " + Matrix.matrixToString(scores);
+    }
+}
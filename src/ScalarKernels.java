@@ -0,0 +1,193 @@
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class ScalarKernels implements MatrixKernels {
+
+    @Override
+    public void axpy4(double a0, double a1, double a2, double a3, double[] b, int b0, int b1, int b2, int b3, double[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] += a0 * b[b0 + i] + a1 * b[b1 + i] + a2 * b[b2 + i] + a3 * b[b3 + i];
+        }
+    }
+
+    @Override
+    public void axpy(double a, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] += a * b[bOffset + i];
+        }
+    }
+
+    /**
+     * Sums in four independent registers so the additions do not wait on each other.
+     */
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int i = 0;
+        for(; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for(; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void dot4(double[] a, int aOffset, double[] b, int b0, int b1, int b2, int b3, int length, double[] c, int cOffset) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        for(int i = 0; i < length; i++) {
+            double x = a[aOffset + i];
+            s0 += x * b[b0 + i];
+            s1 += x * b[b1 + i];
+            s2 += x * b[b2 + i];
+            s3 += x * b[b3 + i];
+        }
+        c[cOffset] += s0;
+        c[cOffset + 1] += s1;
+        c[cOffset + 2] += s2;
+        c[cOffset + 3] += s3;
+    }
+
+    @Override
+    public void dot2x4(double[] a, int a0, int a1, double[] b, int b0, int b1, int b2, int b3, int length, double[] c, int c0, int c1) {
+        double s00 = 0.0, s01 = 0.0, s02 = 0.0, s03 = 0.0, s10 = 0.0, s11 = 0.0, s12 = 0.0, s13 = 0.0;
+        for(int i = 0; i < length; i++) {
+            double x = a[a0 + i], y = a[a1 + i];
+            double w = b[b0 + i];
+            s00 += x * w;
+            s10 += y * w;
+            w = b[b1 + i];
+            s01 += x * w;
+            s11 += y * w;
+            w = b[b2 + i];
+            s02 += x * w;
+            s12 += y * w;
+            w = b[b3 + i];
+            s03 += x * w;
+            s13 += y * w;
+        }
+        c[c0] += s00;
+        c[c0 + 1] += s01;
+        c[c0 + 2] += s02;
+        c[c0 + 3] += s03;
+        c[c1] += s10;
+        c[c1 + 1] += s11;
+        c[c1 + 2] += s12;
+        c[c1 + 3] += s13;
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] - b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void scale(double[] a, int aOffset, double constant, double[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] * constant;
+        }
+    }
+
+    @Override
+    public void axpy4(float a0, float a1, float a2, float a3, float[] b, int b0, int b1, int b2, int b3, float[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] += a0 * b[b0 + i] + a1 * b[b1 + i] + a2 * b[b2 + i] + a3 * b[b3 + i];
+        }
+    }
+
+    @Override
+    public void axpy(float a, float[] b, int bOffset, float[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] += a * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        int i = 0;
+        for(; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for(; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void dot4(float[] a, int aOffset, float[] b, int b0, int b1, int b2, int b3, int length, float[] c, int cOffset) {
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        for(int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            s0 += x * b[b0 + i];
+            s1 += x * b[b1 + i];
+            s2 += x * b[b2 + i];
+            s3 += x * b[b3 + i];
+        }
+        c[cOffset] += s0;
+        c[cOffset + 1] += s1;
+        c[cOffset + 2] += s2;
+        c[cOffset + 3] += s3;
+    }
+
+    @Override
+    public void dot2x4(float[] a, int a0, int a1, float[] b, int b0, int b1, int b2, int b3, int length, float[] c, int c0, int c1) {
+        float s00 = 0.0f, s01 = 0.0f, s02 = 0.0f, s03 = 0.0f, s10 = 0.0f, s11 = 0.0f, s12 = 0.0f, s13 = 0.0f;
+        for(int i = 0; i < length; i++) {
+            float x = a[a0 + i], y = a[a1 + i];
+            float w = b[b0 + i];
+            s00 += x * w;
+            s10 += y * w;
+            w = b[b1 + i];
+            s01 += x * w;
+            s11 += y * w;
+            w = b[b2 + i];
+            s02 += x * w;
+            s12 += y * w;
+            w = b[b3 + i];
+            s03 += x * w;
+            s13 += y * w;
+        }
+        c[c0] += s00;
+        c[c0 + 1] += s01;
+        c[c0 + 2] += s02;
+        c[c0 + 3] += s03;
+        c[c1] += s10;
+        c[c1 + 1] += s11;
+        c[c1 + 2] += s12;
+        c[c1 + 3] += s13;
+    }
+
+    @Override
+    public void add(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int length) {
+        for(int i = 0; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+}
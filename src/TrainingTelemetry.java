@@ -0,0 +1,282 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class TrainingTelemetry implements AutoCloseable {
+
+    // Telemetry is on when a file is given with -Dtelemetry.file=..., a file ending in .csv gets CSV and any other file
+    // JSON lines. -Dtelemetry.interval=N writes a record every N batches besides the record of every epoch.
+    static final boolean ENABLED = System.getProperty("telemetry.file") != null;
+    private static final int DEFAULT_INTERVAL = 100;
+
+    /**
+     * The phases of training that are timed. Forward and backpropagation are summed over the worker threads, batch
+     * assembly is done on the thread of the BatchSource while the training thread waits or trains.
+     */
+
+    enum Phase {
+        BATCH_WAIT("batchWait"), BATCH_ASSEMBLY("batchAssembly"), FORWARD("forward"),
+        BACK_PROPAGATE("backPropagate"), GRADIENT_DESCENT("gradientDescent"), EVALUATION("evaluation");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final String[] COLUMNS = columns();
+
+    private final BufferedWriter writer;
+    private final boolean csv;
+    private final int interval;
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Thread trainingThread = Thread.currentThread();
+    private volatile Thread batchThread;
+
+    // Training progress, only touched by the training thread.
+    private long samples;
+    private Snapshot lastInterval, lastEpoch;
+
+    /**
+     * Measures where the time of training goes: the time spent in each phase, the samples trained per second, the bytes
+     * allocated by the training thread and the thread assembling batches, and the collections and time of the garbage
+     * collector. A record is written every interval batches and at the end of every epoch, each covering the time since
+     * the previous record of the same kind. The toggle is the static final ENABLED, when it is false every call site is
+     * dead code to the JIT and training does not even read the clock.
+     * @param file The file to append the records to.
+     * @param csv Whether to write CSV, otherwise JSON lines.
+     * @param interval The number of batches between records.
+     * @throws IOException if the file cannot be opened.
+     */
+
+    TrainingTelemetry(Path file, boolean csv, int interval) throws IOException {
+        if(interval < 1)
+            throw new IllegalArgumentException("Interval must be positive but was " + interval);
+        this.csv = csv;
+        this.interval = interval;
+        for(int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+        boolean empty = !Files.exists(file) || Files.size(file) == 0;
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if(csv && empty)
+            writeLine(String.join(",", COLUMNS));
+        lastInterval = lastEpoch = snapshot();
+    }
+
+    /**
+     * Opens the telemetry given by the system properties, only to be called when ENABLED is true.
+     * @throws UncheckedIOException if the file cannot be opened.
+     */
+
+    static TrainingTelemetry open() {
+        Path file = Paths.get(System.getProperty("telemetry.file"));
+        int interval = Integer.getInteger("telemetry.interval", DEFAULT_INTERVAL);
+        try {
+            return new TrainingTelemetry(file, file.toString().endsWith(".csv"), interval);
+        } catch(IOException e) {
+            throw new UncheckedIOException("Could not open telemetry file " + file, e);
+        }
+    }
+
+    /**
+     * Returns the current time to start timing a phase, or 0 when telemetry is off.
+     */
+
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Adds the time since start to the phase and returns the current time, so phases following each other can be timed
+     * with one read of the clock each. May be called from any thread.
+     */
+
+    long lap(Phase phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()].add(now - start);
+        return now;
+    }
+
+    /**
+     * Sets the thread assembling the batches, whose allocations are reported besides those of the training thread.
+     */
+
+    void setBatchThread(Thread thread) {
+        batchThread = thread;
+    }
+
+    /**
+     * Counts a trained batch and writes a record if interval batches have passed since the last one.
+     * @param epoch The current epoch.
+     * @param batch The index of the batch in the epoch.
+     * @param batchSize The number of samples in the batch.
+     */
+
+    void batchDone(int epoch, int batch, int batchSize) {
+        samples += batchSize;
+        if((batch + 1) % interval == 0) {
+            Snapshot now = snapshot();
+            write("batches", epoch, batch + 1, lastInterval, now, Double.NaN, Double.NaN);
+            lastInterval = now;
+        }
+    }
+
+    /**
+     * Writes the record of an epoch.
+     * @param epoch The epoch that is done.
+     * @param batches The number of batches in the epoch.
+     * @param accuracy The fraction of the test set classified correctly after the epoch.
+     * @param loss The mean loss of the test set after the epoch.
+     */
+
+    void epochDone(int epoch, int batches, double accuracy, double loss) {
+        Snapshot now = snapshot();
+        write("epoch", epoch, batches, lastEpoch, now, accuracy, loss);
+        lastEpoch = lastInterval = now;
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Snapshot snapshot() {
+        long[] phases = new long[phaseNanos.length];
+        for(int i = 0; i < phases.length; i++) {
+            phases[i] = phaseNanos[i].sum();
+        }
+        long gcCount = 0, gcMillis = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        Thread batchThread = this.batchThread;
+        return new Snapshot(System.nanoTime(), samples, phases, allocatedBytes(trainingThread),
+                            batchThread == null ? 0 : allocatedBytes(batchThread), gcCount, gcMillis);
+    }
+
+    /**
+     * Returns the bytes allocated by the thread so far, or 0 if the JVM does not measure it.
+     */
+
+    private long allocatedBytes(Thread thread) {
+        if(threads instanceof com.sun.management.ThreadMXBean)
+            return Math.max(0, ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(thread.getId()));
+        return 0;
+    }
+
+    /**
+     * Writes the difference between two snapshots as one record.
+     */
+
+    private void write(String type, int epoch, int batch, Snapshot from, Snapshot to, double accuracy, double loss) {
+        double seconds = (to.nanos - from.nanos) / 1e9;
+        long samples = to.samples - from.samples;
+        Object[] values = new Object[COLUMNS.length];
+        int i = 0;
+        values[i++] = csv ? type : "\"" + type + "\"";
+        values[i++] = epoch;
+        values[i++] = batch;
+        values[i++] = samples;
+        values[i++] = format(seconds);
+        values[i++] = format(seconds > 0 ? samples / seconds : 0.0);
+        for(int phase = 0; phase < to.phases.length; phase++) {
+            values[i++] = format((to.phases[phase] - from.phases[phase]) / 1e6);
+        }
+        // A thread that has ended reports nothing, which must not turn into negative allocations.
+        values[i++] = Math.max(0, to.trainingBytes - from.trainingBytes);
+        values[i++] = Math.max(0, to.batchBytes - from.batchBytes);
+        values[i++] = to.gcCount - from.gcCount;
+        values[i++] = to.gcMillis - from.gcMillis;
+        values[i++] = Double.isNaN(accuracy) ? null : format(accuracy);
+        values[i] = Double.isNaN(loss) ? null : String.format(Locale.ROOT, "%.6f", loss);
+        StringBuilder line = new StringBuilder(csv ? "" : "{");
+        for(int j = 0; j < values.length; j++) {
+            if(j > 0)
+                line.append(',');
+            if(csv) {
+                line.append(values[j] == null ? "" : values[j]);
+            } else {
+                line.append('"').append(COLUMNS[j]).append("\":").append(values[j]);
+            }
+        }
+        writeLine(csv ? line.toString() : line.append('}').toString());
+    }
+
+    private void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String[] columns() {
+        Phase[] phases = Phase.values();
+        String[] columns = new String[12 + phases.length];
+        int i = 0;
+        columns[i++] = "type";
+        columns[i++] = "epoch";
+        columns[i++] = "batch";
+        columns[i++] = "samples";
+        columns[i++] = "seconds";
+        columns[i++] = "samplesPerSecond";
+        for(Phase phase : phases) {
+            columns[i++] = phase.name + "Millis";
+        }
+        columns[i++] = "trainingAllocatedBytes";
+        columns[i++] = "batchAllocatedBytes";
+        columns[i++] = "gcCount";
+        columns[i++] = "gcMillis";
+        columns[i++] = "accuracy";
+        columns[i++] = "loss";
+        return columns;
+    }
+
+    /**
+     * The counters at one point in time.
+     */
+
+    private static class Snapshot {
+
+        final long nanos, samples, trainingBytes, batchBytes, gcCount, gcMillis;
+        final long[] phases;
+
+        Snapshot(long nanos, long samples, long[] phases, long trainingBytes, long batchBytes, long gcCount, long gcMillis) {
+            this.nanos = nanos;
+            this.samples = samples;
+            this.phases = phases;
+            this.trainingBytes = trainingBytes;
+            this.batchBytes = batchBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+    }
+}
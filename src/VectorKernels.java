@@ -0,0 +1,315 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class VectorKernels implements MatrixKernels {
+
+    // The widest vectors the CPU supports, e.g. 4 doubles with AVX2 or 8 with AVX-512.
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void axpy4(double a0, double a1, double a2, double a3, double[] b, int b0, int b1, int b2, int b3, double[] c, int cOffset, int length) {
+        DoubleVector v0 = DoubleVector.broadcast(DOUBLES, a0), v1 = DoubleVector.broadcast(DOUBLES, a1);
+        DoubleVector v2 = DoubleVector.broadcast(DOUBLES, a2), v3 = DoubleVector.broadcast(DOUBLES, a3);
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector sum = DoubleVector.fromArray(DOUBLES, c, cOffset + i);
+            sum = DoubleVector.fromArray(DOUBLES, b, b0 + i).fma(v0, sum);
+            sum = DoubleVector.fromArray(DOUBLES, b, b1 + i).fma(v1, sum);
+            sum = DoubleVector.fromArray(DOUBLES, b, b2 + i).fma(v2, sum);
+            sum = DoubleVector.fromArray(DOUBLES, b, b3 + i).fma(v3, sum);
+            sum.intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] += a0 * b[b0 + i] + a1 * b[b1 + i] + a2 * b[b2 + i] + a3 * b[b3 + i];
+        }
+    }
+
+    @Override
+    public void axpy(double a, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        DoubleVector v = DoubleVector.broadcast(DOUBLES, a);
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, b, bOffset + i).fma(v, DoubleVector.fromArray(DOUBLES, c, cOffset + i)).intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] += a * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            sum = DoubleVector.fromArray(DOUBLES, a, aOffset + i).fma(DoubleVector.fromArray(DOUBLES, b, bOffset + i), sum);
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for(; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void dot4(double[] a, int aOffset, double[] b, int b0, int b1, int b2, int b3, int length, double[] c, int cOffset) {
+        DoubleVector s0 = DoubleVector.zero(DOUBLES), s1 = s0, s2 = s0, s3 = s0;
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, a, aOffset + i);
+            s0 = x.fma(DoubleVector.fromArray(DOUBLES, b, b0 + i), s0);
+            s1 = x.fma(DoubleVector.fromArray(DOUBLES, b, b1 + i), s1);
+            s2 = x.fma(DoubleVector.fromArray(DOUBLES, b, b2 + i), s2);
+            s3 = x.fma(DoubleVector.fromArray(DOUBLES, b, b3 + i), s3);
+        }
+        double r0 = s0.reduceLanes(VectorOperators.ADD), r1 = s1.reduceLanes(VectorOperators.ADD);
+        double r2 = s2.reduceLanes(VectorOperators.ADD), r3 = s3.reduceLanes(VectorOperators.ADD);
+        for(; i < length; i++) {
+            double x = a[aOffset + i];
+            r0 += x * b[b0 + i];
+            r1 += x * b[b1 + i];
+            r2 += x * b[b2 + i];
+            r3 += x * b[b3 + i];
+        }
+        c[cOffset] += r0;
+        c[cOffset + 1] += r1;
+        c[cOffset + 2] += r2;
+        c[cOffset + 3] += r3;
+    }
+
+    @Override
+    public void dot2x4(double[] a, int a0, int a1, double[] b, int b0, int b1, int b2, int b3, int length, double[] c, int c0, int c1) {
+        DoubleVector s00 = DoubleVector.zero(DOUBLES), s01 = s00, s02 = s00, s03 = s00;
+        DoubleVector s10 = s00, s11 = s00, s12 = s00, s13 = s00;
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, a, a0 + i), y = DoubleVector.fromArray(DOUBLES, a, a1 + i);
+            DoubleVector w = DoubleVector.fromArray(DOUBLES, b, b0 + i);
+            s00 = x.fma(w, s00);
+            s10 = y.fma(w, s10);
+            w = DoubleVector.fromArray(DOUBLES, b, b1 + i);
+            s01 = x.fma(w, s01);
+            s11 = y.fma(w, s11);
+            w = DoubleVector.fromArray(DOUBLES, b, b2 + i);
+            s02 = x.fma(w, s02);
+            s12 = y.fma(w, s12);
+            w = DoubleVector.fromArray(DOUBLES, b, b3 + i);
+            s03 = x.fma(w, s03);
+            s13 = y.fma(w, s13);
+        }
+        double r00 = s00.reduceLanes(VectorOperators.ADD), r01 = s01.reduceLanes(VectorOperators.ADD);
+        double r02 = s02.reduceLanes(VectorOperators.ADD), r03 = s03.reduceLanes(VectorOperators.ADD);
+        double r10 = s10.reduceLanes(VectorOperators.ADD), r11 = s11.reduceLanes(VectorOperators.ADD);
+        double r12 = s12.reduceLanes(VectorOperators.ADD), r13 = s13.reduceLanes(VectorOperators.ADD);
+        for(; i < length; i++) {
+            double x = a[a0 + i], y = a[a1 + i];
+            r00 += x * b[b0 + i];
+            r01 += x * b[b1 + i];
+            r02 += x * b[b2 + i];
+            r03 += x * b[b3 + i];
+            r10 += y * b[b0 + i];
+            r11 += y * b[b1 + i];
+            r12 += y * b[b2 + i];
+            r13 += y * b[b3 + i];
+        }
+        c[c0] += r00;
+        c[c0 + 1] += r01;
+        c[c0 + 2] += r02;
+        c[c0 + 3] += r03;
+        c[c1] += r10;
+        c[c1 + 1] += r11;
+        c[c1 + 2] += r12;
+        c[c1 + 3] += r13;
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, aOffset + i).add(DoubleVector.fromArray(DOUBLES, b, bOffset + i)).intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, aOffset + i).sub(DoubleVector.fromArray(DOUBLES, b, bOffset + i)).intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] - b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int length) {
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, aOffset + i).mul(DoubleVector.fromArray(DOUBLES, b, bOffset + i)).intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void scale(double[] a, int aOffset, double constant, double[] c, int cOffset, int length) {
+        int i = 0;
+        int upper = DOUBLES.loopBound(length);
+        for(; i < upper; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, aOffset + i).mul(constant).intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] * constant;
+        }
+    }
+
+    @Override
+    public void axpy4(float a0, float a1, float a2, float a3, float[] b, int b0, int b1, int b2, int b3, float[] c, int cOffset, int length) {
+        FloatVector v0 = FloatVector.broadcast(FLOATS, a0), v1 = FloatVector.broadcast(FLOATS, a1);
+        FloatVector v2 = FloatVector.broadcast(FLOATS, a2), v3 = FloatVector.broadcast(FLOATS, a3);
+        int i = 0;
+        int upper = FLOATS.loopBound(length);
+        for(; i < upper; i += FLOATS.length()) {
+            FloatVector sum = FloatVector.fromArray(FLOATS, c, cOffset + i);
+            sum = FloatVector.fromArray(FLOATS, b, b0 + i).fma(v0, sum);
+            sum = FloatVector.fromArray(FLOATS, b, b1 + i).fma(v1, sum);
+            sum = FloatVector.fromArray(FLOATS, b, b2 + i).fma(v2, sum);
+            sum = FloatVector.fromArray(FLOATS, b, b3 + i).fma(v3, sum);
+            sum.intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] += a0 * b[b0 + i] + a1 * b[b1 + i] + a2 * b[b2 + i] + a3 * b[b3 + i];
+        }
+    }
+
+    @Override
+    public void axpy(float a, float[] b, int bOffset, float[] c, int cOffset, int length) {
+        FloatVector v = FloatVector.broadcast(FLOATS, a);
+        int i = 0;
+        int upper = FLOATS.loopBound(length);
+        for(; i < upper; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, b, bOffset + i).fma(v, FloatVector.fromArray(FLOATS, c, cOffset + i)).intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] += a * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        int upper = FLOATS.loopBound(length);
+        for(; i < upper; i += FLOATS.length()) {
+            sum = FloatVector.fromArray(FLOATS, a, aOffset + i).fma(FloatVector.fromArray(FLOATS, b, bOffset + i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for(; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void dot4(float[] a, int aOffset, float[] b, int b0, int b1, int b2, int b3, int length, float[] c, int cOffset) {
+        FloatVector s0 = FloatVector.zero(FLOATS), s1 = s0, s2 = s0, s3 = s0;
+        int i = 0;
+        int upper = FLOATS.loopBound(length);
+        for(; i < upper; i += FLOATS.length()) {
+            FloatVector x = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            s0 = x.fma(FloatVector.fromArray(FLOATS, b, b0 + i), s0);
+            s1 = x.fma(FloatVector.fromArray(FLOATS, b, b1 + i), s1);
+            s2 = x.fma(FloatVector.fromArray(FLOATS, b, b2 + i), s2);
+            s3 = x.fma(FloatVector.fromArray(FLOATS, b, b3 + i), s3);
+        }
+        float r0 = s0.reduceLanes(VectorOperators.ADD), r1 = s1.reduceLanes(VectorOperators.ADD);
+        float r2 = s2.reduceLanes(VectorOperators.ADD), r3 = s3.reduceLanes(VectorOperators.ADD);
+        for(; i < length; i++) {
+            float x = a[aOffset + i];
+            r0 += x * b[b0 + i];
+            r1 += x * b[b1 + i];
+            r2 += x * b[b2 + i];
+            r3 += x * b[b3 + i];
+        }
+        c[cOffset] += r0;
+        c[cOffset + 1] += r1;
+        c[cOffset + 2] += r2;
+        c[cOffset + 3] += r3;
+    }
+
+    @Override
+    public void dot2x4(float[] a, int a0, int a1, float[] b, int b0, int b1, int b2, int b3, int length, float[] c, int c0, int c1) {
+        FloatVector s00 = FloatVector.zero(FLOATS), s01 = s00, s02 = s00, s03 = s00;
+        FloatVector s10 = s00, s11 = s00, s12 = s00, s13 = s00;
+        int i = 0;
+        int upper = FLOATS.loopBound(length);
+        for(; i < upper; i += FLOATS.length()) {
+            FloatVector x = FloatVector.fromArray(FLOATS, a, a0 + i), y = FloatVector.fromArray(FLOATS, a, a1 + i);
+            FloatVector w = FloatVector.fromArray(FLOATS, b, b0 + i);
+            s00 = x.fma(w, s00);
+            s10 = y.fma(w, s10);
+            w = FloatVector.fromArray(FLOATS, b, b1 + i);
+            s01 = x.fma(w, s01);
+            s11 = y.fma(w, s11);
+            w = FloatVector.fromArray(FLOATS, b, b2 + i);
+            s02 = x.fma(w, s02);
+            s12 = y.fma(w, s12);
+            w = FloatVector.fromArray(FLOATS, b, b3 + i);
+            s03 = x.fma(w, s03);
+            s13 = y.fma(w, s13);
+        }
+        float r00 = s00.reduceLanes(VectorOperators.ADD), r01 = s01.reduceLanes(VectorOperators.ADD);
+        float r02 = s02.reduceLanes(VectorOperators.ADD), r03 = s03.reduceLanes(VectorOperators.ADD);
+        float r10 = s10.reduceLanes(VectorOperators.ADD), r11 = s11.reduceLanes(VectorOperators.ADD);
+        float r12 = s12.reduceLanes(VectorOperators.ADD), r13 = s13.reduceLanes(VectorOperators.ADD);
+        for(; i < length; i++) {
+            float x = a[a0 + i], y = a[a1 + i];
+            r00 += x * b[b0 + i];
+            r01 += x * b[b1 + i];
+            r02 += x * b[b2 + i];
+            r03 += x * b[b3 + i];
+            r10 += y * b[b0 + i];
+            r11 += y * b[b1 + i];
+            r12 += y * b[b2 + i];
+            r13 += y * b[b3 + i];
+        }
+        c[c0] += r00;
+        c[c0 + 1] += r01;
+        c[c0 + 2] += r02;
+        c[c0 + 3] += r03;
+        c[c1] += r10;
+        c[c1 + 1] += r11;
+        c[c1 + 2] += r12;
+        c[c1 + 3] += r13;
+    }
+
+    @Override
+    public void add(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int length) {
+        int i = 0;
+        int upper = FLOATS.loopBound(length);
+        for(; i < upper; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, aOffset + i).add(FloatVector.fromArray(FLOATS, b, bOffset + i)).intoArray(c, cOffset + i);
+        }
+        for(; i < length; i++) {
+            c[cOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.Arrays;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class Workspace {
+
+    // Every matrix has one row per image in the batch.
+    final DenseMatrix input;
+    final DenseMatrix[] weightedInput, activation, error;
+
+    // Gradients summed over the images fed through this workspace, same sizes as the weights and biases.
+    final DenseMatrix[] totalWeightError;
+    final double[][] totalBiasError;
+
+    /**
+     * Allocates the buffers needed to feed forward and backpropagate a batch of the given size through a network
+     * with the given weights, and to sum up its gradients. The buffers are reused for every batch, so nothing is
+     * allocated while training. A workspace is only ever used by one thread at a time.
+     * @param weights The weights of the network, weights[layer] is numOfNeurons x numOfWeights.
+     * @param rows The number of images in a batch.
+     */
+
+    Workspace(DenseMatrix[] weights, int rows) {
+        this(weights, rows, true);
+    }
+
+    /**
+     * Allocates the buffers needed to feed forward a batch of the given size, and to backpropagate it if training is true.
+     * Without training the errors and gradients are not allocated.
+     * @param weights The weights of the network, weights[layer] is numOfNeurons x numOfWeights.
+     * @param rows The number of images in a batch.
+     * @param training Whether the workspace is used to backpropagate.
+     */
+
+    Workspace(DenseMatrix[] weights, int rows, boolean training) {
+        int layers = weights.length;
+        input = new DenseMatrix(rows, weights[0].cols());
+        weightedInput = new DenseMatrix[layers];
+        activation = new DenseMatrix[layers];
+        error = training ? new DenseMatrix[layers] : null;
+        totalWeightError = training ? new DenseMatrix[layers] : null;
+        totalBiasError = training ? new double[layers][] : null;
+        for(int i = 0; i < layers; i++) {
+            int neurons = weights[i].rows();
+            weightedInput[i] = new DenseMatrix(rows, neurons);
+            activation[i] = new DenseMatrix(rows, neurons);
+            if(training) {
+                error[i] = new DenseMatrix(rows, neurons);
+                totalWeightError[i] = new DenseMatrix(neurons, weights[i].cols());
+                totalBiasError[i] = new double[neurons];
+            }
+        }
+    }
+
+    /**
+     * Creates a workspace for feeding forward made of views of the first rows of the given workspace.
+     */
+
+    private Workspace(Workspace workspace, int rows) {
+        int layers = workspace.weightedInput.length;
+        input = workspace.input.rows(0, rows);
+        weightedInput = new DenseMatrix[layers];
+        activation = new DenseMatrix[layers];
+        for(int i = 0; i < layers; i++) {
+            weightedInput[i] = workspace.weightedInput[i].rows(0, rows);
+            activation[i] = workspace.activation[i].rows(0, rows);
+        }
+        error = null;
+        totalWeightError = null;
+        totalBiasError = null;
+    }
+
+    /**
+     * Returns a workspace sharing the buffers of the first rows of this workspace, for feeding forward a batch
+     * smaller than this workspace without allocating new buffers. It cannot be used to backpropagate.
+     */
+
+    Workspace head(int rows) {
+        if(rows == rows())
+            return this;
+        return new Workspace(this, rows);
+    }
+
+    /**
+     * Sets the gradients of this workspace back to zero.
+     */
+
+    void resetError() {
+        for(int i = 0; i < totalBiasError.length; i++) {
+            Arrays.fill(totalBiasError[i], 0.0);
+            totalWeightError[i].fill(0.0);
+        }
+    }
+
+    /**
+     * Adds the gradients of the given workspace to the gradients of this workspace.
+     */
+
+    void addError(Workspace other) {
+        for(int i = 0; i < totalBiasError.length; i++) {
+            Matrix.scaledAdditionInto(totalWeightError[i], other.totalWeightError[i], 1.0);
+            Matrix.scaledAdditionInto(totalBiasError[i], other.totalBiasError[i], 1.0);
+        }
+    }
+
+    /**
+     * Returns the number of images a batch in this workspace holds.
+     */
+
+    int rows() {
+        return input.rows();
+    }
+}
@@ -0,0 +1,88 @@
+import Math.Activation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class ActivationTest {
+
+    private static final int NEURONS = 10;
+
+    // Step of the central differences, their error is of the order of STEP^2 times the third derivative.
+    private static final double STEP = 1e-5, TOLERANCE = 1e-8;
+
+    private final Random random = new Random(42);
+
+    /**
+     * multiplyDerivative() multiplies an error by the derivative of the activation, so for an error g it has to give the
+     * gradient of sum_i g_i * f(x)_i by x, which is checked against central differences. For softmax this covers the
+     * whole Jacobian, not just its diagonal.
+     */
+
+    @Test
+    void matchFiniteDifferences() {
+        for(Activation activation : Activation.values()) {
+            for(int run = 0; run < 10; run++) {
+                double[] x = weightedInputs();
+                double[] g = random.doubles(NEURONS, -1.0, 1.0).toArray();
+                double[] output = new double[NEURONS];
+                activation.apply(x, 0, output, 0, NEURONS);
+                // At an offset into larger arrays, like a row of a batch.
+                double[] paddedOutput = new double[NEURONS + 3], analytic = new double[NEURONS + 5];
+                System.arraycopy(output, 0, paddedOutput, 3, NEURONS);
+                System.arraycopy(g, 0, analytic, 5, NEURONS);
+                activation.multiplyDerivative(paddedOutput, 3, analytic, 5, NEURONS);
+
+                double[] numeric = new double[NEURONS + 5];
+                for(int k = 0; k < NEURONS; k++) {
+                    double[] plus = x.clone(), minus = x.clone();
+                    plus[k] += STEP;
+                    minus[k] -= STEP;
+                    numeric[5 + k] = (weightedSum(activation, plus, g) - weightedSum(activation, minus, g)) / (2 * STEP);
+                }
+                assertArrayEquals(numeric, analytic, TOLERANCE, activation.toString());
+            }
+        }
+    }
+
+    /**
+     * The ids stored in model files lead back to the same activation.
+     */
+
+    @Test
+    void findById() {
+        for(Activation activation : Activation.values()) {
+            assertSame(activation, Activation.of(activation.id()));
+            assertSame(activation, Activation.of(activation.toString()));
+        }
+    }
+
+    /**
+     * Returns weighted inputs in [-3, 3] that keep away from the kink of ReLU at 0 by more than the step.
+     */
+
+    private double[] weightedInputs() {
+        double[] x = new double[NEURONS];
+        for(int i = 0; i < NEURONS; i++) {
+            double magnitude = 0.01 + 2.99 * random.nextDouble();
+            x[i] = random.nextBoolean() ? magnitude : -magnitude;
+        }
+        return x;
+    }
+
+    private static double weightedSum(Activation activation, double[] x, double[] g) {
+        double[] output = new double[x.length];
+        activation.apply(x, 0, output, 0, x.length);
+        double sum = 0.0;
+        for(int i = 0; i < x.length; i++) {
+            sum += g[i] * output[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class BatchingPredictorTest {
+
+    private static final int[] SIZES = {16, 8, 10};
+    private static final int MAX_BATCH_SIZE = 8;
+
+    /**
+     * Every caller gets the prediction of its own image, however the images were put together in batches, and no batch
+     * is larger than the max batch size.
+     */
+
+    @Test
+    void predictConcurrently() throws Exception {
+        AtomicInteger largestBatch = new AtomicInteger();
+        Network network = new Network(SIZES, 42) {
+            @Override
+            public Prediction[] predictBatch(double[][] images) {
+                largestBatch.accumulateAndGet(images.length, Math::max);
+                return super.predictBatch(images);
+            }
+        };
+        int callers = 16, imagesPerCaller = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try(BatchingPredictor predictor = new BatchingPredictor(network, MAX_BATCH_SIZE, 1, TimeUnit.MILLISECONDS)) {
+            List<Future<?>> results = new ArrayList<>();
+            for(int i = 0; i < callers; i++) {
+                Random random = new Random(i);
+                results.add(executor.submit(() -> {
+                    for(int j = 0; j < imagesPerCaller; j++) {
+                        double[] image = random.doubles(SIZES[0]).toArray();
+                        Prediction prediction = predictor.predict(image).get();
+                        Prediction expected = network.predict(image);
+                        assertEquals(expected.getDigit(), prediction.getDigit());
+                        assertArrayEquals(expected.getScores(), prediction.getScores(), 1e-12);
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> result : results) {
+                result.get();
+            }
+            assertTrue(largestBatch.get() <= MAX_BATCH_SIZE, "Fed forward a batch of " + largestBatch.get() + " images");
+            assertTrue(predictor.averageBatchSize() > 1.0, "Average batch size " + predictor.averageBatchSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * close() does not wait out the max wait, the images queued before it are classified and any image after it is
+     * rejected.
+     */
+
+    @Test
+    void closePromptly() throws Exception {
+        BatchingPredictor predictor = new BatchingPredictor(new Network(SIZES, 42), MAX_BATCH_SIZE, 10, TimeUnit.SECONDS);
+        List<CompletableFuture<Prediction>> futures = new ArrayList<>();
+        for(int i = 0; i < MAX_BATCH_SIZE / 2; i++) {
+            futures.add(predictor.predict(new double[SIZES[0]]));
+        }
+        long start = System.nanoTime();
+        predictor.close();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(millis < 1000, "close() took " + millis + " ms");
+        for(CompletableFuture<Prediction> future : futures) {
+            assertTrue(future.isDone());
+            future.get();
+        }
+        assertThrows(RejectedExecutionException.class, () -> predictor.predict(new double[SIZES[0]]));
+    }
+
+    /**
+     * A failing batch fails the futures of its images and the predictor goes on with the next batch.
+     */
+
+    @Test
+    void failBatch() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Network network = new Network(SIZES, 42) {
+            @Override
+            public Prediction[] predictBatch(double[][] images) {
+                if(calls.getAndIncrement() == 0)
+                    throw new IllegalStateException("First batch fails");
+                return super.predictBatch(images);
+            }
+        };
+        try(BatchingPredictor predictor = new BatchingPredictor(network, MAX_BATCH_SIZE, 0, TimeUnit.MILLISECONDS)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> predictor.predict(new double[SIZES[0]]).get());
+            assertTrue(e.getCause() instanceof IllegalStateException, e.toString());
+            predictor.predict(new double[SIZES[0]]).get();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class DatasetTest {
+
+    /**
+     * The test images are standardized with the mean and standard deviation of the training images, not their own.
+     */
+
+    @Test
+    void standardizeWithTrainingStatistics() {
+        // Pixels 0 and 2 have mean 1 and standard deviation 1.
+        Dataset trainingSet = dataset(new byte[]{0, 2, 2, 0}, Normalization.sigmoid());
+        Dataset testSet = dataset(new byte[]{4, 1}, Normalization.sigmoid());
+
+        Normalization standardized = Normalization.standardized(trainingSet);
+        Dataset standardizedTraining = trainingSet.withNormalization(standardized);
+        Dataset standardizedTest = testSet.range(0, 1).withNormalization(standardized);
+
+        assertArrayEquals(new double[]{-1.0, 1.0}, standardizedTraining.normalizedImage(0), 1e-12);
+        assertArrayEquals(new double[]{3.0, 0.0}, standardizedTest.normalizedImage(0), 1e-12);
+        assertEquals(1, standardizedTest.size());
+        assertEquals(testSet.label(0), standardizedTest.label(0));
+        assertSame(standardized, standardizedTest.normalization());
+        assertArrayEquals(new double[]{Normalization.sigmoid().apply((byte) 4), Normalization.sigmoid().apply((byte) 1)},
+                          testSet.normalizedImage(0), 0.0);
+    }
+
+    /**
+     * For every k, fold k and the rest are disjoint and together hold every image, and the folds for all k are disjoint
+     * and cover every image. Also on a view that reorders its images, so the indices of views compose.
+     */
+
+    @Test
+    void partitionIntoFolds() {
+        int images = 23, folds = 5;
+        Dataset dataset = dataset(new byte[2 * images], Normalization.scaled());
+        int[] reversed = new int[images];
+        for(int i = 0; i < images; i++) {
+            reversed[i] = images - 1 - i;
+        }
+        for(Dataset view : new Dataset[]{dataset, dataset.subset(reversed)}) {
+            int[] inFold = new int[images];
+            for(int k = 0; k < folds; k++) {
+                Dataset fold = view.fold(k, folds), rest = view.exceptFold(k, folds);
+                assertTrue(fold.size() == images / folds || fold.size() == images / folds + 1, "Fold of " + fold.size());
+                assertEquals(images, fold.size() + rest.size());
+                boolean[] seen = new boolean[images];
+                for(Dataset part : new Dataset[]{fold, rest}) {
+                    for(int i = 0; i < part.size(); i++) {
+                        assertFalse(seen[part.label(i)], "Image " + part.label(i) + " twice in fold " + k);
+                        seen[part.label(i)] = true;
+                    }
+                }
+                for(int i = 0; i < fold.size(); i++) {
+                    inFold[fold.label(i)]++;
+                }
+            }
+            assertArrayEquals(filled(images, 1), inFold);
+        }
+        assertThrows(IllegalArgumentException.class, () -> dataset.fold(folds, folds));
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] result = new int[length];
+        Arrays.fill(result, value);
+        return result;
+    }
+
+    /**
+     * Returns a dataset of images of 2 pixels labelled 0, 1, 2 and so on.
+     */
+
+    private static Dataset dataset(byte[] pixels, Normalization normalization) {
+        int[] labels = new int[pixels.length / 2];
+        for(int i = 0; i < labels.length; i++) {
+            labels[i] = i;
+        }
+        return new Dataset(ByteBuffer.wrap(pixels), 2, labels, normalization);
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class EpochSamplerTest {
+
+    private static final int SIZE = 100, EPOCHS = 5;
+
+    /**
+     * Every epoch is a permutation of the images, and the same seed gives the same sequence of epochs.
+     */
+
+    @Test
+    void reproduceEpochsFromSeed() {
+        int[][] first = epochs(new EpochSampler(SIZE, 42));
+        int[][] second = epochs(new EpochSampler(SIZE, 42));
+        int[] identity = new int[SIZE];
+        Arrays.setAll(identity, i -> i);
+        for(int i = 0; i < EPOCHS; i++) {
+            assertArrayEquals(first[i], second[i], "Epoch " + i);
+            int[] sorted = first[i].clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(identity, sorted, "Epoch " + i + " is not a permutation");
+            assertFalse(Arrays.equals(identity, first[i]), "Epoch " + i + " is not shuffled");
+        }
+        assertFalse(Arrays.equals(first[0], first[1]), "Two epochs in the same order");
+        assertFalse(Arrays.deepEquals(first, epochs(new EpochSampler(SIZE, 43))), "Another seed gives the same epochs");
+    }
+
+    /**
+     * A batch holds the images and labels at its positions of the current epoch, in that order.
+     */
+
+    @Test
+    void gatherInEpochOrder() {
+        // Image i has the single pixel i and the label i % 10.
+        byte[] pixels = new byte[SIZE];
+        int[] labels = new int[SIZE];
+        for(int i = 0; i < SIZE; i++) {
+            pixels[i] = (byte) i;
+            labels[i] = i % 10;
+        }
+        Dataset dataset = new Dataset(ByteBuffer.wrap(pixels), 1, labels, Normalization.scaled());
+        EpochSampler sampler = new EpochSampler(SIZE, 42);
+        sampler.shuffle();
+        DenseMatrix input = new DenseMatrix(10, 1);
+        int[] batchLabels = new int[10];
+        sampler.gather(dataset, 20, input, batchLabels);
+        for(int i = 0; i < 10; i++) {
+            int image = sampler.get(20 + i);
+            assertEquals(dataset.normalizedImage(image)[0], input.get(i, 0));
+            assertEquals(image % 10, batchLabels[i]);
+        }
+    }
+
+    private static int[][] epochs(EpochSampler sampler) {
+        int[][] result = new int[EPOCHS][SIZE];
+        for(int i = 0; i < EPOCHS; i++) {
+            sampler.shuffle();
+            for(int j = 0; j < SIZE; j++) {
+                result[i][j] = sampler.get(j);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class FloatNetworkTest {
+
+    private static final int IMAGE_SIZE = 16;
+    private static final int[] LAYOUT = {IMAGE_SIZE, 12, 10};
+
+    private final Dataset trainingSet = dataset(2000, 1);
+    private final Dataset testSet = dataset(500, 2);
+
+    @Test
+    void learnFromTraining() {
+        FloatNetwork network = new FloatNetwork(LAYOUT, 42);
+        int before = network.countCorrect(testSet, 10);
+        network.training(trainingSet, testSet, 10, 3.0, 3);
+        int after = network.countCorrect(testSet, 10);
+        assertTrue(after > 0.9 * testSet.size(), "Classified " + after + " of " + testSet.size() + " correctly, " + before + " before training");
+    }
+
+    /**
+     * With the same seed the single and double precision networks start from the same weights and see the images in
+     * the same order, so they only differ by the rounding of floats, which training does not blow up.
+     */
+
+    @Test
+    void matchDoublePrecision() {
+        FloatNetwork single = new FloatNetwork(LAYOUT, 42);
+        Network network = new Network(LAYOUT, 42);
+        assertEquals(0.0, largestDifference(single, network), 1e-5, "Untrained outputs");
+
+        single.training(trainingSet, testSet, 10, 3.0, 3);
+        network.training(trainingSet, testSet, 10, 3.0, 3);
+        assertEquals(0.0, largestDifference(single, network), 1e-3, "Trained outputs");
+        assertEquals(network.evaluate(testSet, 10).correct, single.countCorrect(testSet, 10), 0.01 * testSet.size());
+    }
+
+    /**
+     * Returns the largest difference between the outputs of the networks over the test images.
+     */
+
+    private double largestDifference(FloatNetwork single, Network network) {
+        double largest = 0.0;
+        for(int i = 0; i < testSet.size(); i++) {
+            double[] image = testSet.normalizedImage(i);
+            float[] floatImage = new float[image.length];
+            for(int j = 0; j < image.length; j++) {
+                floatImage[j] = (float) image[j];
+            }
+            double[] expected = network.predict(image).getScores();
+            double[] actual = single.predict(floatImage).getScores();
+            for(int j = 0; j < expected.length; j++) {
+                largest = Math.max(largest, Math.abs(expected[j] - actual[j]));
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Returns a dataset of noisy images where the brightest pixel is the label.
+     */
+
+    private static Dataset dataset(int images, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[images * IMAGE_SIZE];
+        int[] labels = new int[images];
+        for(int i = 0; i < images; i++) {
+            labels[i] = random.nextInt(10);
+            for(int j = 0; j < IMAGE_SIZE; j++) {
+                pixels[i * IMAGE_SIZE + j] = (byte) (j == labels[i] ? 255 : random.nextInt(128));
+            }
+        }
+        return new Dataset(ByteBuffer.wrap(pixels), IMAGE_SIZE, labels, Normalization.scaled());
+    }
+}
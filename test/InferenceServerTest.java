@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class InferenceServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private InferenceServer server;
+
+    @AfterEach
+    void stop() {
+        if(server != null)
+            server.stop(0);
+    }
+
+    @Test
+    void predictJson() throws Exception {
+        start(Normalization.scaled());
+        HttpResponse<String> response = post("{\"image\": [0, 128, 255, 64]}");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"predictions\":[{\"digit\":"), response.body());
+    }
+
+    @Test
+    void rejectDeeplyNestedJson() throws Exception {
+        start(Normalization.scaled());
+        HttpResponse<String> response = post("[".repeat(1000) + "]".repeat(1000));
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().contains("nested deeper"), response.body());
+    }
+
+    /**
+     * A request with more images than accepted is rejected before its images are normalized.
+     */
+
+    @Test
+    void rejectTooManyImages() throws Exception {
+        start(Normalization.scaled());
+        // One image more than accepted still fits the body limit, which allows for an IDX header.
+        HttpResponse<String> response = post("application/octet-stream", new byte[(InferenceServer.MAX_IMAGES + 1) * 4]);
+        assertEquals(413, response.statusCode());
+        assertTrue(response.body().contains("at most " + InferenceServer.MAX_IMAGES), response.body());
+        response = post("application/octet-stream", new byte[InferenceServer.MAX_IMAGES * 4]);
+        assertEquals(200, response.statusCode());
+    }
+
+    @Test
+    void rejectTooLargeBody() throws Exception {
+        start(Normalization.scaled());
+        HttpResponse<String> response = post("{\"images\": [" + "[255, 255, 255, 255], ".repeat(2 * InferenceServer.MAX_IMAGES) + "[0, 0, 0, 0]]}");
+        assertEquals(413, response.statusCode());
+        assertTrue(response.body().contains("larger than"), response.body());
+    }
+
+    /**
+     * A failure inside the server is answered with a 500 and counted, the connection is not just closed.
+     */
+
+    @Test
+    void answerInternalErrors() throws Exception {
+        server = new InferenceServer(input -> {
+            throw new IllegalStateException("Broken predictor");
+        }, 4, Normalization.scaled(), 0);
+        server.start();
+        HttpResponse<String> response = post("{\"image\": [0, 128, 255, 64]}");
+        assertEquals(500, response.statusCode());
+        // The client is not told what failed.
+        assertEquals("{\"error\":\"Internal error\"}", response.body());
+        HttpResponse<String> metrics = client.send(HttpRequest.newBuilder(uri("/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+        assertTrue(metrics.body().contains("\"errors\":1,"), metrics.body());
+    }
+
+    private void start(Normalization normalization) throws IOException {
+        server = new InferenceServer(new Network(new int[]{4, 3, 10}, 42), normalization, 0);
+        server.start();
+    }
+
+    private HttpResponse<String> post(String json) throws IOException, InterruptedException {
+        return post("application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpResponse<String> post(String contentType, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri("/predict"))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+}
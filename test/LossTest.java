@@ -0,0 +1,102 @@
+import Math.Activation;
+import Math.Loss;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class LossTest {
+
+    private static final int NEURONS = 10;
+
+    // Step of the central differences, their error is of the order of STEP^2 times the third derivative.
+    private static final double STEP = 1e-5, TOLERANCE = 1e-8;
+
+    private final Random random = new Random(42);
+
+    /**
+     * outputError() has to give the gradient of the loss by the weighted inputs of the output layer, for every output
+     * activation the loss can be used with, which is checked against central differences. This covers the shortcut
+     * a - y of cross-entropy and log-likelihood as well as the activation derivative of the quadratic loss.
+     */
+
+    @Test
+    void matchFiniteDifferences() {
+        for(Loss loss : Loss.values()) {
+            for(Activation activation : Activation.values()) {
+                if(!loss.matches(activation))
+                    continue;
+                for(int run = 0; run < 10; run++) {
+                    double[] z = weightedInputs();
+                    int label = random.nextInt(NEURONS);
+                    double[] output = new double[NEURONS], analytic = new double[NEURONS];
+                    activation.apply(z, 0, output, 0, NEURONS);
+                    loss.outputError(activation, output, 0, NEURONS, label, analytic, 0);
+
+                    double[] numeric = new double[NEURONS];
+                    for(int k = 0; k < NEURONS; k++) {
+                        double[] plus = z.clone(), minus = z.clone();
+                        plus[k] += STEP;
+                        minus[k] -= STEP;
+                        numeric[k] = (loss(loss, activation, plus, label) - loss(loss, activation, minus, label)) / (2 * STEP);
+                    }
+                    assertArrayEquals(numeric, analytic, TOLERANCE, loss + " with " + activation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Each loss is only accepted with the output activations whose output error it calculates correctly.
+     */
+
+    @Test
+    void matchOutputActivations() {
+        for(Activation activation : Activation.values()) {
+            assertTrue(Loss.QUADRATIC.matches(activation), activation.toString());
+            assertEquals(activation == Activation.SIGMOID, Loss.CROSS_ENTROPY.matches(activation), activation.toString());
+            assertEquals(activation == Activation.SOFTMAX, Loss.LOG_LIKELIHOOD.matches(activation), activation.toString());
+        }
+    }
+
+    /**
+     * The losses of a perfect output are 0, and an output of exactly 0 for the label gives a large but finite loss.
+     */
+
+    @Test
+    void boundLoss() {
+        double[] perfect = new double[NEURONS];
+        perfect[3] = 1.0;
+        for(Loss loss : Loss.values()) {
+            assertEquals(0.0, loss.loss(perfect, 0, NEURONS, 3), 0.0, loss.toString());
+            double wrong = loss.loss(perfect, 0, NEURONS, 4);
+            assertTrue(wrong > 0.0 && Double.isFinite(wrong), loss + " of a wrong output is " + wrong);
+        }
+    }
+
+    /**
+     * Returns weighted inputs in [-3, 3] that keep away from the kink of ReLU at 0 by more than the step.
+     */
+
+    private double[] weightedInputs() {
+        double[] z = new double[NEURONS];
+        for(int i = 0; i < NEURONS; i++) {
+            double magnitude = 0.01 + 2.99 * random.nextDouble();
+            z[i] = random.nextBoolean() ? magnitude : -magnitude;
+        }
+        return z;
+    }
+
+    private static double loss(Loss loss, Activation activation, double[] z, int label) {
+        double[] output = new double[z.length];
+        activation.apply(z, 0, output, 0, z.length);
+        return loss.loss(output, 0, output.length, label);
+    }
+}
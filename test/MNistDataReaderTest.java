@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class MNistDataReaderTest {
+
+    // 3 training and 2 test images of 2 x 2 pixels, pixel j of image i is 10 * i + j.
+    private static final int TRAINING_IMAGES = 3, TEST_IMAGES = 2, ROWS = 2, COLS = 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readFiles() throws IOException {
+        writeFiles();
+        MNistDataReader reader = new MNistDataReader(directory);
+        assertEquals(ROWS * COLS, reader.getImageSize());
+        assertArrayEquals(new byte[][]{{0, 1, 2, 3}, {10, 11, 12, 13}, {20, 21, 22, 23}}, reader.getTrainingImages());
+        assertArrayEquals(new byte[]{0, 1, 2}, reader.getTrainingLabels());
+        assertArrayEquals(new byte[][]{{0, 1, 2, 3}, {10, 11, 12, 13}}, reader.getTestImages());
+        assertArrayEquals(new byte[]{0, 1}, reader.getTestLabels());
+    }
+
+    @Test
+    void rejectWrongMagic() throws IOException {
+        writeFiles();
+        // The magic of a label file in an image file.
+        byte[] content = images(TRAINING_IMAGES, ROWS, COLS);
+        ByteBuffer.wrap(content).putInt(0, 0x801);
+        Files.write(directory.resolve("train-images.idx3-ubyte"), content);
+        assertReadFails("Expected magic header \"0x803\"");
+    }
+
+    @Test
+    void rejectLabelCountMismatch() throws IOException {
+        writeFiles();
+        Files.write(directory.resolve("train-labels.idx1-ubyte"), labels(TRAINING_IMAGES + 1, TRAINING_IMAGES + 1));
+        assertReadFails("Expected " + TRAINING_IMAGES + " labels");
+    }
+
+    @Test
+    void rejectTruncatedFile() throws IOException {
+        writeFiles();
+        Path file = directory.resolve("t10k-images.idx3-ubyte");
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+        assertReadFails("Expected " + TEST_IMAGES * ROWS * COLS + " bytes of pixels");
+    }
+
+    @Test
+    void rejectDifferentImageSizes() throws IOException {
+        writeFiles();
+        Files.write(directory.resolve("t10k-images.idx3-ubyte"), images(TEST_IMAGES, ROWS, COLS + 1));
+        assertReadFails("Test images are 2 x 3 but training images are 2 x 2");
+    }
+
+    private void assertReadFails(String message) {
+        IOException e = assertThrows(IOException.class, () -> new MNistDataReader(directory));
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+
+    private void writeFiles() throws IOException {
+        Files.write(directory.resolve("train-images.idx3-ubyte"), images(TRAINING_IMAGES, ROWS, COLS));
+        Files.write(directory.resolve("train-labels.idx1-ubyte"), labels(TRAINING_IMAGES, TRAINING_IMAGES));
+        Files.write(directory.resolve("t10k-images.idx3-ubyte"), images(TEST_IMAGES, ROWS, COLS));
+        Files.write(directory.resolve("t10k-labels.idx1-ubyte"), labels(TEST_IMAGES, TEST_IMAGES));
+    }
+
+    /**
+     * Returns an IDX image file, big-endian like the MNist files.
+     */
+
+    private static byte[] images(int images, int rows, int cols) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + images * rows * cols);
+        buffer.putInt(0x803).putInt(images).putInt(rows).putInt(cols);
+        for(int i = 0; i < images; i++) {
+            for(int j = 0; j < rows * cols; j++) {
+                buffer.put((byte) (10 * i + j));
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Returns an IDX label file whose header says count labels, holding the labels 0, 1, 2 and so on.
+     */
+
+    private static byte[] labels(int count, int labels) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + labels);
+        buffer.putInt(0x801).putInt(count);
+        for(int i = 0; i < labels; i++) {
+            buffer.put((byte) i);
+        }
+        return buffer.array();
+    }
+}
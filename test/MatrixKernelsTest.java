@@ -0,0 +1,185 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class MatrixKernelsTest {
+
+    // Lengths shorter than a vector and around multiples of 4, 8 and 16 lanes, so the scalar tails are covered for any
+    // species, and the layer sizes of the networks.
+    private static final int[] LENGTHS = {0, 1, 2, 3, 5, 7, 9, 15, 17, 30, 31, 33, 63, 65, 100, 101, 784};
+
+    // Offsets into the arrays, odd so the vectors are not aligned with the start of the arrays.
+    private static final int A = 3, B = 5, C = 7;
+
+    // Fused multiply-adds and reordered sums round differently, the results differ by a few ulps of the sum of the
+    // absolute products.
+    private static final double TOLERANCE = 1e-13;
+
+    private final MatrixKernels scalar = new ScalarKernels();
+    private final MatrixKernels vector = new VectorKernels();
+    private final Random random = new Random(42);
+
+    @Test
+    void axpy4() {
+        for(int length : LENGTHS) {
+            double[] b = random(4 * length + B);
+            double[] c = random(length + C);
+            double[] expected = c.clone(), actual = c.clone();
+            scalar.axpy4(0.5, -1.25, 2.0, 0.75, b, B, B + length, B + 2 * length, B + 3 * length, expected, C, length);
+            vector.axpy4(0.5, -1.25, 2.0, 0.75, b, B, B + length, B + 2 * length, B + 3 * length, actual, C, length);
+            assertArrayEquals(expected, actual, TOLERANCE * 5, "length " + length);
+        }
+    }
+
+    @Test
+    void axpy() {
+        for(int length : LENGTHS) {
+            double[] b = random(length + B);
+            double[] c = random(length + C);
+            double[] expected = c.clone(), actual = c.clone();
+            scalar.axpy(-0.3, b, B, expected, C, length);
+            vector.axpy(-0.3, b, B, actual, C, length);
+            assertArrayEquals(expected, actual, TOLERANCE, "length " + length);
+        }
+    }
+
+    @Test
+    void dot() {
+        for(int length : LENGTHS) {
+            double[] a = random(length + A), b = random(length + B);
+            assertEquals(scalar.dot(a, A, b, B, length), vector.dot(a, A, b, B, length), TOLERANCE * (length + 1), "length " + length);
+        }
+    }
+
+    @Test
+    void dot4() {
+        for(int length : LENGTHS) {
+            double[] a = random(length + A), b = random(4 * length + B);
+            double[] c = random(4 + C);
+            double[] expected = c.clone(), actual = c.clone();
+            scalar.dot4(a, A, b, B, B + length, B + 2 * length, B + 3 * length, length, expected, C);
+            vector.dot4(a, A, b, B, B + length, B + 2 * length, B + 3 * length, length, actual, C);
+            assertArrayEquals(expected, actual, TOLERANCE * (length + 1), "length " + length);
+        }
+    }
+
+    @Test
+    void dot2x4() {
+        for(int length : LENGTHS) {
+            double[] a = random(2 * length + A), b = random(4 * length + B);
+            double[] c = random(8 + C);
+            double[] expected = c.clone(), actual = c.clone();
+            scalar.dot2x4(a, A, A + length, b, B, B + length, B + 2 * length, B + 3 * length, length, expected, C, C + 4);
+            vector.dot2x4(a, A, A + length, b, B, B + length, B + 2 * length, B + 3 * length, length, actual, C, C + 4);
+            assertArrayEquals(expected, actual, TOLERANCE * (length + 1), "length " + length);
+        }
+    }
+
+    @Test
+    void elementwise() {
+        for(int length : LENGTHS) {
+            double[] a = random(length + A), b = random(length + B);
+            double[] expected = new double[length + C], actual = new double[length + C];
+            scalar.add(a, A, b, B, expected, C, length);
+            vector.add(a, A, b, B, actual, C, length);
+            assertArrayEquals(expected, actual, 0.0, "add, length " + length);
+            scalar.subtract(a, A, b, B, expected, C, length);
+            vector.subtract(a, A, b, B, actual, C, length);
+            assertArrayEquals(expected, actual, 0.0, "subtract, length " + length);
+            scalar.multiply(a, A, b, B, expected, C, length);
+            vector.multiply(a, A, b, B, actual, C, length);
+            assertArrayEquals(expected, actual, 0.0, "multiply, length " + length);
+            scalar.scale(a, A, -2.5, expected, C, length);
+            vector.scale(a, A, -2.5, actual, C, length);
+            assertArrayEquals(expected, actual, 0.0, "scale, length " + length);
+        }
+    }
+
+    @Test
+    void floatAxpy() {
+        for(int length : LENGTHS) {
+            float[] b = randomFloats(4 * length + B);
+            float[] c = randomFloats(length + C);
+            float[] expected = c.clone(), actual = c.clone();
+            scalar.axpy4(0.5f, -1.25f, 2.0f, 0.75f, b, B, B + length, B + 2 * length, B + 3 * length, expected, C, length);
+            vector.axpy4(0.5f, -1.25f, 2.0f, 0.75f, b, B, B + length, B + 2 * length, B + 3 * length, actual, C, length);
+            assertArrayEquals(expected, actual, 1e-5f, "axpy4, length " + length);
+            scalar.axpy(-0.3f, b, B, expected, C, length);
+            vector.axpy(-0.3f, b, B, actual, C, length);
+            assertArrayEquals(expected, actual, 1e-5f, "axpy, length " + length);
+        }
+    }
+
+    @Test
+    void floatDot() {
+        for(int length : LENGTHS) {
+            float[] a = randomFloats(2 * length + A), b = randomFloats(4 * length + B);
+            float tolerance = 1e-6f * (length + 1);
+            assertEquals(scalar.dot(a, A, b, B, length), vector.dot(a, A, b, B, length), tolerance, "dot, length " + length);
+            float[] c = randomFloats(8 + C);
+            float[] expected = c.clone(), actual = c.clone();
+            scalar.dot4(a, A, b, B, B + length, B + 2 * length, B + 3 * length, length, expected, C);
+            vector.dot4(a, A, b, B, B + length, B + 2 * length, B + 3 * length, length, actual, C);
+            assertArrayEquals(expected, actual, tolerance, "dot4, length " + length);
+            scalar.dot2x4(a, A, A + length, b, B, B + length, B + 2 * length, B + 3 * length, length, expected, C, C + 4);
+            vector.dot2x4(a, A, A + length, b, B, B + length, B + 2 * length, B + 3 * length, length, actual, C, C + 4);
+            assertArrayEquals(expected, actual, tolerance, "dot2x4, length " + length);
+            float[] sum = new float[length + C], vectorSum = new float[length + C];
+            scalar.add(a, A, b, B, sum, C, length);
+            vector.add(a, A, b, B, vectorSum, C, length);
+            assertArrayEquals(sum, vectorSum, 0.0f, "add, length " + length);
+        }
+    }
+
+    /**
+     * Single precision sums round at every step, but stay within a few float ulps per term of the double sums of the
+     * same values.
+     */
+
+    @Test
+    void floatMatchesDouble() {
+        for(int length : LENGTHS) {
+            float[] a = randomFloats(2 * length + A), b = randomFloats(4 * length + B);
+            double[] doubleA = toDouble(a), doubleB = toDouble(b);
+            double tolerance = 1e-6 * (length + 1);
+            assertEquals(scalar.dot(doubleA, A, doubleB, B, length), vector.dot(a, A, b, B, length), tolerance, "dot, length " + length);
+            float[] c = new float[8 + C];
+            double[] expected = new double[8 + C];
+            scalar.dot2x4(doubleA, A, A + length, doubleB, B, B + length, B + 2 * length, B + 3 * length, length, expected, C, C + 4);
+            vector.dot2x4(a, A, A + length, b, B, B + length, B + 2 * length, B + 3 * length, length, c, C, C + 4);
+            assertArrayEquals(expected, toDouble(c), tolerance, "dot2x4, length " + length);
+            c = new float[length + C];
+            expected = new double[length + C];
+            scalar.axpy4(0.5, -1.25, 2.0, 0.75, doubleB, B, B + length, B + 2 * length, B + 3 * length, expected, C, length);
+            vector.axpy4(0.5f, -1.25f, 2.0f, 0.75f, b, B, B + length, B + 2 * length, B + 3 * length, c, C, length);
+            assertArrayEquals(expected, toDouble(c), 1e-6, "axpy4, length " + length);
+        }
+    }
+
+    private static double[] toDouble(float[] values) {
+        double[] result = new double[values.length];
+        for(int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    private double[] random(int length) {
+        return random.doubles(length, -1.0, 1.0).toArray();
+    }
+
+    private float[] randomFloats(int length) {
+        float[] result = new float[length];
+        for(int i = 0; i < length; i++) {
+            result[i] = 2.0f * random.nextFloat() - 1.0f;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class MatrixTest {
+
+    // Shapes m x k times k x n. Odd sizes that are no multiple of the 2 x 4 blocks or of a vector, and sizes past the
+    // tiles of 64 x 128 x 128, so every tail and every partial tile is covered.
+    private static final int[][] SHAPES = {{1, 1, 1}, {1, 5, 3}, {3, 5, 7}, {5, 9, 3}, {7, 13, 17}, {9, 33, 65},
+                                           {2, 4, 8}, {67, 131, 133}, {65, 257, 9}};
+
+    // The operands and results are views into larger arrays, starting at an offset and with this many unused values
+    // after every row.
+    private static final int OFFSET = 3, PADDING = 5;
+
+    private static final double TOLERANCE = 1e-12;
+
+    private final Random random = new Random(42);
+
+    /**
+     * Checks A * B against the textbook triple loop.
+     */
+
+    @Test
+    void multiplication() {
+        for(int[] shape : SHAPES) {
+            int m = shape[0], k = shape[1], n = shape[2];
+            DenseMatrix a = random(m, k), b = random(k, n);
+            for(boolean accumulate : new boolean[]{false, true}) {
+                DenseMatrix result = random(m, n);
+                double[] expected = expected(result, accumulate, (i, j) -> {
+                    double sum = 0.0;
+                    for(int l = 0; l < k; l++) {
+                        sum += a.get(i, l) * b.get(l, j);
+                    }
+                    return sum;
+                });
+                Matrix.multiplicationInto(result, a, b, accumulate);
+                assertArrayEquals(expected, result.data(), TOLERANCE * k, describe(shape, accumulate));
+            }
+        }
+    }
+
+    /**
+     * Checks A * B^T against the textbook triple loop, B is k x n here so B^T fits A.
+     */
+
+    @Test
+    void multiplicationTransposed() {
+        for(int[] shape : SHAPES) {
+            int m = shape[0], k = shape[1], n = shape[2];
+            DenseMatrix a = random(m, k), b = random(n, k);
+            for(boolean accumulate : new boolean[]{false, true}) {
+                DenseMatrix result = random(m, n);
+                double[] expected = expected(result, accumulate, (i, j) -> {
+                    double sum = 0.0;
+                    for(int l = 0; l < k; l++) {
+                        sum += a.get(i, l) * b.get(j, l);
+                    }
+                    return sum;
+                });
+                Matrix.multiplicationTransposedInto(result, a, b, accumulate);
+                assertArrayEquals(expected, result.data(), TOLERANCE * k, describe(shape, accumulate));
+            }
+        }
+    }
+
+    /**
+     * Checks A^T * B against the textbook triple loop, A is k x m here so A^T fits B.
+     */
+
+    @Test
+    void transposedMultiplication() {
+        for(int[] shape : SHAPES) {
+            int m = shape[0], k = shape[1], n = shape[2];
+            DenseMatrix a = random(k, m), b = random(k, n);
+            for(boolean accumulate : new boolean[]{false, true}) {
+                DenseMatrix result = random(m, n);
+                double[] expected = expected(result, accumulate, (i, j) -> {
+                    double sum = 0.0;
+                    for(int l = 0; l < k; l++) {
+                        sum += a.get(l, i) * b.get(l, j);
+                    }
+                    return sum;
+                });
+                Matrix.transposedMultiplicationInto(result, a, b, accumulate);
+                assertArrayEquals(expected, result.data(), TOLERANCE * k, describe(shape, accumulate));
+            }
+        }
+    }
+
+    /**
+     * Checks the single precision products against the double precision ones on the same values.
+     */
+
+    @Test
+    void floatMultiplications() {
+        for(int[] shape : SHAPES) {
+            int m = shape[0], k = shape[1], n = shape[2];
+            DenseMatrix a = random(m, k), b = random(k, n), bTransposed = random(n, k), aTransposed = random(k, m);
+            for(boolean accumulate : new boolean[]{false, true}) {
+                DenseMatrix result = random(m, n);
+                DenseMatrix expected = copy(result);
+                FloatDenseMatrix floatResult = toFloat(result);
+                Matrix.multiplicationInto(expected, a, b, accumulate);
+                Matrix.multiplicationInto(floatResult, toFloat(a), toFloat(b), accumulate);
+                assertEquals(expected, floatResult, k, "A * B, " + describe(shape, accumulate));
+
+                expected = copy(result);
+                floatResult = toFloat(result);
+                Matrix.multiplicationTransposedInto(expected, a, bTransposed, accumulate);
+                Matrix.multiplicationTransposedInto(floatResult, toFloat(a), toFloat(bTransposed), accumulate);
+                assertEquals(expected, floatResult, k, "A * B^T, " + describe(shape, accumulate));
+
+                expected = copy(result);
+                floatResult = toFloat(result);
+                Matrix.transposedMultiplicationInto(expected, aTransposed, b, accumulate);
+                Matrix.transposedMultiplicationInto(floatResult, toFloat(aTransposed), toFloat(b), accumulate);
+                assertEquals(expected, floatResult, k, "A^T * B, " + describe(shape, accumulate));
+            }
+        }
+    }
+
+    private interface Element {
+        double get(int i, int j);
+    }
+
+    /**
+     * Returns the expected backing array of the result, every element of the view set to or increased by the element
+     * of the product, everything outside the view unchanged.
+     */
+
+    private static double[] expected(DenseMatrix result, boolean accumulate, Element product) {
+        double[] expected = result.data().clone();
+        for(int i = 0; i < result.rows(); i++) {
+            for(int j = 0; j < result.cols(); j++) {
+                expected[result.index(i, j)] = (accumulate ? result.get(i, j) : 0.0) + product.get(i, j);
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Compares a single precision result with the double precision one, allowing a few float ulps per term of the sums.
+     */
+
+    private static void assertEquals(DenseMatrix expected, FloatDenseMatrix actual, int terms, String message) {
+        double[] e = expected.data();
+        float[] a = actual.data();
+        for(int i = 0; i < e.length; i++) {
+            org.junit.jupiter.api.Assertions.assertEquals(e[i], a[i], 1e-6 * (terms + 2), message + ", index " + i);
+        }
+    }
+
+    /**
+     * Returns a random rows x cols view into a larger array, starting at OFFSET and with PADDING values between rows.
+     */
+
+    private DenseMatrix random(int rows, int cols) {
+        int stride = cols + PADDING;
+        double[] data = new double[OFFSET + rows * stride];
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (float) (2.0 * random.nextDouble() - 1.0);
+        }
+        return new DenseMatrix(data, OFFSET, rows, cols, stride);
+    }
+
+    private static DenseMatrix copy(DenseMatrix matrix) {
+        return new DenseMatrix(matrix.data().clone(), matrix.index(0, 0), matrix.rows(), matrix.cols(), matrix.stride());
+    }
+
+    private static FloatDenseMatrix toFloat(DenseMatrix matrix) {
+        double[] data = matrix.data();
+        float[] result = new float[data.length];
+        for(int i = 0; i < data.length; i++) {
+            result[i] = (float) data[i];
+        }
+        return new FloatDenseMatrix(result, matrix.index(0, 0), matrix.rows(), matrix.cols(), matrix.stride());
+    }
+
+    private static String describe(int[] shape, boolean accumulate) {
+        return shape[0] + "x" + shape[1] + " times " + shape[1] + "x" + shape[2] + (accumulate ? ", accumulating" : "");
+    }
+}
@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class ModelFileTest {
+
+    private static final String LAYOUT = "4-3:relu-2:softmax";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadWhatWasSaved() throws IOException {
+        Network network = new Network(Layout.parse(LAYOUT), 42);
+        Path file = directory.resolve("network.model");
+        network.save(file);
+
+        Network loaded = Network.load(file);
+        double[] image = {0.1, 0.5, 0.9, 0.3};
+        assertEquals(LAYOUT, loaded.layout());
+        assertArrayEquals(network.predict(image).getScores(), loaded.predict(image).getScores(), 0.0);
+    }
+
+    /**
+     * The activations are stored by their id, one that does not exist is rejected rather than mapped to another
+     * activation.
+     */
+
+    @Test
+    void rejectUnknownActivation() throws IOException {
+        Path file = save();
+        // The header is magic, version, number of layers + 1 and the 3 layers, then the activation of each layer.
+        change(file, content -> ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(4 * (3 + 3), 99));
+        assertLoadFails(file, "activation id 99");
+    }
+
+    @Test
+    void rejectDamagedWeight() throws IOException {
+        Path file = save();
+        // The 32 byte header is followed by the weights, flip one bit in the middle of the first.
+        change(file, content -> content[32 + 3] ^= 0x10);
+        assertLoadFails(file, "Checksum");
+    }
+
+    @Test
+    void rejectTruncatedFile() throws IOException {
+        Path file = save();
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 3));
+        assertLoadFails(file, "Expected " + content.length + " bytes");
+    }
+
+    @Test
+    void rejectOtherFiles() throws IOException {
+        Path file = save();
+        change(file, content -> content[0] = 'X');
+        assertLoadFails(file, "is not a model");
+
+        file = save();
+        change(file, content -> ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 3));
+        assertLoadFails(file, "Expected model version 2");
+    }
+
+    private Path save() throws IOException {
+        Path file = directory.resolve("network.model");
+        new Network(Layout.parse(LAYOUT), 42).save(file);
+        return file;
+    }
+
+    private static void change(Path file, Consumer<byte[]> change) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        change.accept(content);
+        Files.write(file, content);
+    }
+
+    private static void assertLoadFails(Path file, String message) {
+        IOException e = assertThrows(IOException.class, () -> Network.load(file));
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+}
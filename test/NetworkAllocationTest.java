@@ -0,0 +1,90 @@
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class NetworkAllocationTest {
+
+    // A small network and many images, so an epoch has many batches and the allocations of setting up training and of
+    // the evaluation after every epoch are spread thin.
+    private static final int IMAGE_SIZE = 16;
+    private static final int IMAGES = 20_000;
+    private static final int BATCH_SIZE = 10;
+
+    // The size of a Prediction and its 10 scores, 24 + 96 bytes.
+    private static final int PREDICTION_BYTES = 120;
+
+    /**
+     * Training a batch reuses the buffers of the workspace, so once the JIT has warmed up, the training thread should
+     * only allocate what is needed to set up training and evaluate each epoch, and nothing per batch.
+     */
+
+    @Test
+    void trainingAllocatesNothingPerBatch() {
+        Dataset trainingSet = randomDataset(IMAGES, 1);
+        Dataset testSet = randomDataset(100, 2);
+        Network network = new Network(new int[]{IMAGE_SIZE, 8, 10}, 42);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // Both runs are warmed up, the JIT compiles the loop over the epochs differently once it runs more than once.
+        for(int i = 0; i < 5; i++) {
+            network.training(trainingSet, testSet, BATCH_SIZE, 0.1, 1, 1);
+            network.training(trainingSet, testSet, BATCH_SIZE, 0.1, 6, 1);
+        }
+        long start = threads.getThreadAllocatedBytes(thread);
+        network.training(trainingSet, testSet, BATCH_SIZE, 0.1, 1, 1);
+        long oneEpoch = threads.getThreadAllocatedBytes(thread) - start;
+        start = threads.getThreadAllocatedBytes(thread);
+        network.training(trainingSet, testSet, BATCH_SIZE, 0.1, 6, 1);
+        long sixEpochs = threads.getThreadAllocatedBytes(thread) - start;
+
+        // The difference is five epochs of batches and evaluations, the setup is the same for both runs.
+        double perBatch = (sixEpochs - oneEpoch) / (5.0 * IMAGES / BATCH_SIZE);
+        assertTrue(perBatch < 8.0, "Training allocated " + perBatch + " bytes per batch");
+    }
+
+    /**
+     * A prediction reuses the buffers of the calling thread, so it should only allocate the prediction it returns.
+     */
+
+    @Test
+    void predictAllocatesOnlyThePrediction() {
+        Network network = new Network(new int[]{IMAGE_SIZE, 8, 10}, 42);
+        double[] image = new double[IMAGE_SIZE];
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for(int i = 0; i < 200_000; i++) {
+            network.predict(image);
+        }
+        int predictions = 100_000;
+        long start = threads.getThreadAllocatedBytes(thread);
+        for(int i = 0; i < predictions; i++) {
+            network.predict(image);
+        }
+        double perPrediction = (double) (threads.getThreadAllocatedBytes(thread) - start) / predictions;
+        // Without a recording no inference event, 40 bytes or more, may be allocated next to the prediction.
+        assertTrue(perPrediction < PREDICTION_BYTES + 8, "A prediction allocated " + perPrediction + " bytes");
+    }
+
+    /**
+     * Returns a dataset of random pixels and labels.
+     */
+
+    private static Dataset randomDataset(int images, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[images * IMAGE_SIZE];
+        random.nextBytes(pixels);
+        int[] labels = random.ints(images, 0, 10).toArray();
+        return new Dataset(ByteBuffer.wrap(pixels), IMAGE_SIZE, labels, Normalization.scaled());
+    }
+}
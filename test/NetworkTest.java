@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class NetworkTest {
+
+    private static final int IMAGE_SIZE = 16;
+    private static final int[] LAYOUT = {IMAGE_SIZE, 12, 10};
+
+    private final Dataset trainingSet = randomDataset(1000, 1);
+    private final Dataset testSet = randomDataset(100, 2);
+
+    /**
+     * Splitting the batches between threads only changes the order the gradients are summed in, so with the same seed
+     * the weights end up the same as on one thread up to rounding.
+     */
+
+    @Test
+    void parallelTrainingMatchesOneThread() {
+        Network serial = new Network(LAYOUT, 42);
+        Network parallel = new Network(LAYOUT, 42);
+        serial.training(trainingSet, testSet, 10, 0.5, 2, 1);
+        parallel.training(trainingSet, testSet, 10, 0.5, 2, 4);
+        for(int i = 0; i < LAYOUT.length - 1; i++) {
+            assertArrayEquals(serial.getWeights()[i].data(), parallel.getWeights()[i].data(), 1e-9, "weights of layer " + i);
+            assertArrayEquals(serial.getBias()[i], parallel.getBias()[i], 1e-9, "biases of layer " + i);
+        }
+    }
+
+    /**
+     * An interrupted training run is not mistaken for a finished one.
+     */
+
+    @Test
+    void interruptedTrainingThrows() {
+        Network network = new Network(LAYOUT, 42);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class, () -> network.training(trainingSet, testSet, 10, 0.5, 2, 1));
+        } finally {
+            assertTrue(Thread.interrupted(), "The interrupt status was cleared");
+        }
+    }
+
+    /**
+     * Returns a dataset of random pixels and labels.
+     */
+
+    private static Dataset randomDataset(int images, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[images * IMAGE_SIZE];
+        random.nextBytes(pixels);
+        int[] labels = random.ints(images, 0, 10).toArray();
+        return new Dataset(ByteBuffer.wrap(pixels), IMAGE_SIZE, labels, Normalization.scaled());
+    }
+}
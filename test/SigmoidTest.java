@@ -0,0 +1,83 @@
+import Math.Functions;
+import Math.Sigmoid;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenny Brink - kebri18@student.sdu.dk
+ */
+
+class SigmoidTest {
+
+    /**
+     * Every sigmoid stays within its max error of the exact sigmoid on a fine grid past both clamps, and comes close to
+     * it somewhere, so the documented bound is neither broken nor loose.
+     */
+
+    @Test
+    void stayWithinMaxError() {
+        for(Sigmoid sigmoid : Sigmoid.values()) {
+            double largest = 0.0;
+            for(double x : inputs()) {
+                double error = Math.abs(sigmoid.apply(x) - Functions.sigmoid(x));
+                assertTrue(error <= sigmoid.maxError() + 1e-15, sigmoid + " is off by " + error + " at " + x);
+                largest = Math.max(largest, error);
+            }
+            assertTrue(largest >= 0.5 * sigmoid.maxError(), sigmoid + " is off by at most " + largest + ", less than half its max error");
+        }
+    }
+
+    /**
+     * The array versions give the same values as the scalar one, in place as well.
+     */
+
+    @Test
+    void applyArrays() {
+        double[] x = inputs();
+        for(Sigmoid sigmoid : Sigmoid.values()) {
+            double[] expected = new double[x.length];
+            float[] floats = new float[x.length], expectedFloats = new float[x.length];
+            for(int i = 0; i < x.length; i++) {
+                expected[i] = sigmoid.apply(x[i]);
+                floats[i] = (float) x[i];
+                expectedFloats[i] = (float) sigmoid.apply(floats[i]);
+            }
+            double[] result = x.clone();
+            sigmoid.apply(result, 0, result, 0, result.length);
+            assertArrayEquals(expected, result, 0.0, sigmoid.toString());
+            sigmoid.apply(floats, 0, floats, 0, floats.length);
+            assertArrayEquals(expectedFloats, floats, 0.0f, sigmoid.toString());
+        }
+    }
+
+    @Test
+    void saturate() {
+        for(Sigmoid sigmoid : Sigmoid.values()) {
+            assertEquals(0.0, sigmoid.apply(Double.NEGATIVE_INFINITY), sigmoid.maxError(), sigmoid.toString());
+            assertEquals(1.0, sigmoid.apply(Double.POSITIVE_INFINITY), sigmoid.maxError(), sigmoid.toString());
+            assertEquals(0.5, sigmoid.apply(0.0), 1e-15, sigmoid.toString());
+        }
+    }
+
+    /**
+     * Returns a grid over [-40, 40] with 1024 points per unit, shifted by a random fraction of a step so the points
+     * fall between the entries of the table, and the infinities.
+     */
+
+    private static double[] inputs() {
+        Random random = new Random(42);
+        int steps = 80 * 1024;
+        double[] result = new double[steps + 3];
+        for(int i = 0; i <= steps; i++) {
+            result[i] = -40.0 + (i + random.nextDouble()) / 1024.0;
+        }
+        result[steps + 1] = Double.NEGATIVE_INFINITY;
+        result[steps + 2] = Double.POSITIVE_INFINITY;
+        return result;
+    }
+}